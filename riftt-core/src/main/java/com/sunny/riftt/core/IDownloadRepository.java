@@ -2,6 +2,7 @@ package com.sunny.riftt.core;
 
 import com.sunny.riftt.model.Download;
 import com.sunny.riftt.model.DownloadStatus;
+import com.sunny.riftt.model.DownloadSummary;
 import java.sql.Timestamp;
 import java.util.List;
 
@@ -12,7 +13,14 @@ public interface IDownloadRepository {
     void updateEndTime(int downloadId, Timestamp endTime);
     Download getDownloadById(int id);
     List<Download> getAllDownloads();
+    // Newest first; a null status means every download
+    List<DownloadSummary> getDownloadSummaries(DownloadStatus status, int offset, int limit);
+    int countDownloads(DownloadStatus status);
+    // Archived history only; filename substring match, newest first
+    List<DownloadSummary> searchArchive(String query, int offset, int limit);
     boolean deleteDownload(int id);
     void clearAllDownloads();
     void updateDownloadedSize(int downloadId, long bytesToAdd);
+    void saveBlockBitmap(int downloadId, int blockSize, byte[] bitmap);
+    byte[] getBlockBitmap(int downloadId, int blockSize);
 }
@@ -1,9 +1,56 @@
 package com.sunny.riftt.core;
 
+import java.util.function.Supplier;
+
 public interface ILogger {
     void log(String message);
 
     void error(String message);
 
     void error(String string, Exception e);
+
+    /**
+     * Whether messages at this level are written at all. Implementations that
+     * do not filter write everything from {@link LogLevel#INFO} up.
+     */
+    default boolean isEnabled(LogLevel level) {
+        return level.compareTo(LogLevel.INFO) >= 0;
+    }
+
+    /**
+     * Writes a message at the given level. {@code t} may be null. The default
+     * maps levels onto {@link #log(String)} and {@link #error}.
+     */
+    default void log(LogLevel level, String message, Throwable t) {
+        if (!isEnabled(level))
+            return;
+        if (level.compareTo(LogLevel.WARN) < 0) {
+            log(message);
+        } else if (t instanceof Exception) {
+            error(message, (Exception) t);
+        } else {
+            error(t == null ? message : message + " - " + t);
+        }
+    }
+
+    /**
+     * Builds the message only if the level is enabled, so a disabled level
+     * costs one check instead of a string concatenation.
+     */
+    default void log(LogLevel level, Supplier<String> message) {
+        if (isEnabled(level))
+            log(level, message.get(), null);
+    }
+
+    default void debug(Supplier<String> message) {
+        log(LogLevel.DEBUG, message);
+    }
+
+    default void warn(String message) {
+        log(LogLevel.WARN, message, null);
+    }
+
+    default void warn(Supplier<String> message) {
+        log(LogLevel.WARN, message);
+    }
 }
@@ -1,8 +1,11 @@
 package com.sunny.riftt.core;
 
+import com.sunny.riftt.storage.DurabilityMode;
+
 public interface ISettingsProvider {
     int getMaxConcurrentDownloads();
     int getThreadsPerDownload();
     String getDefaultDownloadPath();
     int getConnectionTimeout();
+    DurabilityMode getDurabilityMode();
 }
@@ -0,0 +1,25 @@
+package com.sunny.riftt.core;
+
+/**
+ * Severity of a log message, from least to most severe.
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR;
+
+    /**
+     * Parses a level name case-insensitively, falling back to {@code def} for
+     * null or unknown names.
+     */
+    public static LogLevel fromName(String name, LogLevel def) {
+        if (name != null) {
+            for (LogLevel level : values()) {
+                if (level.name().equalsIgnoreCase(name.trim()))
+                    return level;
+            }
+        }
+        return def;
+    }
+}
@@ -0,0 +1,179 @@
+package com.sunny.riftt.diagnostics;
+
+/**
+ * Emits riftt's Java Flight Recorder events. Every method is safe to call on
+ * any runtime: without {@code jdk.jfr}, or with {@code -Driftt.jfr=false},
+ * they return at once, and while no recording is running the events are
+ * created but never committed.
+ * <p>
+ * Timed events are split in two: a {@code begin} method returns an opaque
+ * span (null when there is nothing to record) that the matching end method
+ * takes.
+ */
+public final class FlightEvents {
+
+    private static final boolean AVAILABLE = detect();
+
+    private FlightEvents() {
+    }
+
+    private static boolean detect() {
+        if ("false".equalsIgnoreCase(System.getProperty("riftt.jfr")))
+            return false;
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static Object beginConnection() {
+        if (!AVAILABLE)
+            return null;
+        RifttEvents.ConnectionOpen e = new RifttEvents.ConnectionOpen();
+        if (!e.isEnabled())
+            return null;
+        e.begin();
+        return e;
+    }
+
+    public static void connectionOpened(Object span, int downloadId, int chunkId, String host, int redirects,
+            int status) {
+        if (span == null)
+            return;
+        RifttEvents.ConnectionOpen e = (RifttEvents.ConnectionOpen) span;
+        e.end();
+        e.downloadId = downloadId;
+        e.chunkId = chunkId;
+        e.host = host;
+        e.redirects = redirects;
+        e.status = status;
+        e.commit();
+    }
+
+    public static Object beginFirstByte() {
+        if (!AVAILABLE)
+            return null;
+        RifttEvents.FirstByte e = new RifttEvents.FirstByte();
+        if (!e.isEnabled())
+            return null;
+        e.begin();
+        return e;
+    }
+
+    public static void firstByte(Object span, int downloadId, int chunkId, long bytes) {
+        if (span == null)
+            return;
+        RifttEvents.FirstByte e = (RifttEvents.FirstByte) span;
+        e.end();
+        e.downloadId = downloadId;
+        e.chunkId = chunkId;
+        e.bytes = bytes;
+        e.commit();
+    }
+
+    public static Object beginCheckpoint() {
+        if (!AVAILABLE)
+            return null;
+        RifttEvents.Checkpoint e = new RifttEvents.Checkpoint();
+        if (!e.isEnabled())
+            return null;
+        e.begin();
+        return e;
+    }
+
+    public static void checkpoint(Object span, int downloadId, int chunkId, long offset) {
+        if (span == null)
+            return;
+        RifttEvents.Checkpoint e = (RifttEvents.Checkpoint) span;
+        e.end();
+        e.downloadId = downloadId;
+        e.chunkId = chunkId;
+        e.offset = offset;
+        e.commit();
+    }
+
+    public static void retry(int downloadId, int chunkId, int attempt, String host, String message) {
+        if (!AVAILABLE)
+            return;
+        RifttEvents.Retry e = new RifttEvents.Retry();
+        if (!e.isEnabled())
+            return;
+        e.downloadId = downloadId;
+        e.chunkId = chunkId;
+        e.attempt = attempt;
+        e.host = host;
+        e.message = message;
+        e.commit();
+    }
+
+    public static void paused(int downloadId, long downloaded) {
+        if (!AVAILABLE)
+            return;
+        RifttEvents.Pause e = new RifttEvents.Pause();
+        if (!e.isEnabled())
+            return;
+        e.downloadId = downloadId;
+        e.downloaded = downloaded;
+        e.commit();
+    }
+
+    public static void resumed(int downloadId, long downloaded) {
+        if (!AVAILABLE)
+            return;
+        RifttEvents.Resume e = new RifttEvents.Resume();
+        if (!e.isEnabled())
+            return;
+        e.downloadId = downloadId;
+        e.downloaded = downloaded;
+        e.commit();
+    }
+
+    public static Object beginChunk() {
+        if (!AVAILABLE)
+            return null;
+        RifttEvents.ChunkComplete e = new RifttEvents.ChunkComplete();
+        if (!e.isEnabled())
+            return null;
+        e.begin();
+        return e;
+    }
+
+    /**
+     * Records a finished chunk. Without a span (e.g. a chunk finished as
+     * part of a multi-range response) the event is instant.
+     */
+    public static void chunkCompleted(Object span, int downloadId, int chunkId, long bytes) {
+        if (!AVAILABLE)
+            return;
+        RifttEvents.ChunkComplete e = span != null ? (RifttEvents.ChunkComplete) span
+                : new RifttEvents.ChunkComplete();
+        if (!e.isEnabled())
+            return;
+        e.end();
+        e.downloadId = downloadId;
+        e.chunkId = chunkId;
+        e.bytes = bytes;
+        e.commit();
+    }
+
+    public static void downloadCompleted(int downloadId, long bytes, boolean success, String message,
+            long runTimeNanos) {
+        if (!AVAILABLE)
+            return;
+        RifttEvents.DownloadComplete e = new RifttEvents.DownloadComplete();
+        if (!e.isEnabled())
+            return;
+        e.downloadId = downloadId;
+        e.bytes = bytes;
+        e.success = success;
+        e.message = message;
+        e.runTime = runTimeNanos;
+        e.commit();
+    }
+}
@@ -0,0 +1,237 @@
+package com.sunny.riftt.diagnostics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline tool that turns a Flight Recorder file into one timeline per
+ * download. GC pauses and fsyncs that fall inside a download's time span are
+ * listed alongside its events, so stalls can be told apart from network
+ * trouble.
+ * <p>
+ * Usage: {@code java -cp riftt-core.jar com.sunny.riftt.diagnostics.JfrTimeline recording.jfr [downloadId]}
+ * <p>
+ * Record with, for example,
+ * {@code -XX:StartFlightRecording=filename=riftt.jfr,settings=profile}.
+ */
+public final class JfrTimeline {
+
+    private static final String GC = "jdk.GarbageCollection";
+    private static final String FSYNC = "jdk.FileForce";
+
+    private final Map<Integer, List<RecordedEvent>> downloads = new TreeMap<>();
+    private final List<RecordedEvent> context = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: JfrTimeline <recording.jfr> [downloadId]");
+            System.exit(2);
+        }
+        Integer only = args.length == 2 ? Integer.valueOf(args[1]) : null;
+        JfrTimeline timeline = new JfrTimeline();
+        timeline.read(Paths.get(args[0]));
+        timeline.print(System.out, only);
+    }
+
+    void read(Path file) throws IOException {
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent e = recording.readEvent();
+                String type = e.getEventType().getName();
+                if (type.startsWith(RifttEvents.PREFIX)) {
+                    downloads.computeIfAbsent(e.getInt("downloadId"), k -> new ArrayList<>()).add(e);
+                } else if (type.equals(GC) || type.equals(FSYNC)) {
+                    context.add(e);
+                }
+            }
+        }
+        Comparator<RecordedEvent> byStart = Comparator.comparing(RecordedEvent::getStartTime);
+        downloads.values().forEach(l -> l.sort(byStart));
+        context.sort(byStart);
+    }
+
+    void print(PrintStream out, Integer only) {
+        if (downloads.isEmpty()) {
+            out.println("No riftt events in this recording.");
+            return;
+        }
+        for (Map.Entry<Integer, List<RecordedEvent>> entry : downloads.entrySet()) {
+            if (only != null && !only.equals(entry.getKey()))
+                continue;
+            printDownload(out, entry.getKey(), entry.getValue());
+            out.println();
+        }
+    }
+
+    private void printDownload(PrintStream out, int id, List<RecordedEvent> events) {
+        Instant start = events.get(0).getStartTime();
+        Instant end = start;
+        for (RecordedEvent e : events) {
+            if (e.getEndTime().isAfter(end))
+                end = e.getEndTime();
+        }
+
+        List<RecordedEvent> merged = new ArrayList<>(events);
+        for (RecordedEvent c : context) {
+            if (!c.getEndTime().isBefore(start) && !c.getStartTime().isAfter(end))
+                merged.add(c);
+        }
+        merged.sort(Comparator.comparing(RecordedEvent::getStartTime));
+
+        out.println("Download " + id + " (" + events.size() + " events over " + formatDuration(
+                Duration.between(start, end)) + ")");
+        out.println("  " + summarize(merged));
+        for (RecordedEvent e : merged) {
+            Duration offset = Duration.between(start, e.getStartTime());
+            String line = String.format("  %+10.3fs  %-11s %s", offset.toNanos() / 1e9, shortName(e), describe(e));
+            if (!e.getDuration().isZero())
+                line += "  [" + formatDuration(e.getDuration()) + "]";
+            out.println(line);
+        }
+    }
+
+    private String summarize(List<RecordedEvent> events) {
+        int connections = 0;
+        int firstBytes = 0;
+        int retries = 0;
+        int checkpoints = 0;
+        int gcs = 0;
+        long connectNanos = 0;
+        long firstByteNanos = 0;
+        long checkpointNanos = 0;
+        long maxCheckpointNanos = 0;
+        long gcPauseNanos = 0;
+        for (RecordedEvent e : events) {
+            long d = e.getDuration().toNanos();
+            switch (shortName(e)) {
+                case "connect":
+                    connections++;
+                    connectNanos += d;
+                    break;
+                case "first-byte":
+                    firstBytes++;
+                    firstByteNanos += d;
+                    break;
+                case "retry":
+                    retries++;
+                    break;
+                case "checkpoint":
+                    checkpoints++;
+                    checkpointNanos += d;
+                    maxCheckpointNanos = Math.max(maxCheckpointNanos, d);
+                    break;
+                case "gc":
+                    gcs++;
+                    gcPauseNanos += e.getDuration("longestPause").toNanos();
+                    break;
+                default:
+                    break;
+            }
+        }
+        return String.format("%d connections (mean %s to headers, %s to first byte), %d retries, "
+                + "%d checkpoints (mean %s, max %s), %d GCs (%s in longest pauses)",
+                connections, formatNanos(mean(connectNanos, connections)),
+                formatNanos(mean(firstByteNanos, firstBytes)), retries, checkpoints,
+                formatNanos(mean(checkpointNanos, checkpoints)), formatNanos(maxCheckpointNanos), gcs,
+                formatNanos(gcPauseNanos));
+    }
+
+    private static long mean(long total, int count) {
+        return count == 0 ? 0 : total / count;
+    }
+
+    private static String shortName(RecordedEvent e) {
+        switch (e.getEventType().getName()) {
+            case RifttEvents.PREFIX + "ConnectionOpen":
+                return "connect";
+            case RifttEvents.PREFIX + "FirstByte":
+                return "first-byte";
+            case RifttEvents.PREFIX + "Checkpoint":
+                return "checkpoint";
+            case RifttEvents.PREFIX + "Retry":
+                return "retry";
+            case RifttEvents.PREFIX + "Pause":
+                return "pause";
+            case RifttEvents.PREFIX + "Resume":
+                return "resume";
+            case RifttEvents.PREFIX + "ChunkComplete":
+                return "chunk-done";
+            case RifttEvents.PREFIX + "DownloadComplete":
+                return "finished";
+            case GC:
+                return "gc";
+            case FSYNC:
+                return "fsync";
+            default:
+                return e.getEventType().getName();
+        }
+    }
+
+    private static String describe(RecordedEvent e) {
+        switch (shortName(e)) {
+            case "connect":
+                return chunk(e) + " " + e.getString("host") + " -> HTTP " + e.getInt("status")
+                        + (e.getInt("redirects") > 0 ? ", " + e.getInt("redirects") + " redirects" : "");
+            case "first-byte":
+                return chunk(e) + " " + formatBytes(e.getLong("bytes"));
+            case "checkpoint":
+                return (e.getInt("chunkId") == -1 ? "manifest" : chunk(e)) + " at "
+                        + formatBytes(e.getLong("offset"));
+            case "retry":
+                return chunk(e) + " attempt " + e.getInt("attempt") + " on " + e.getString("host") + ": "
+                        + e.getString("message");
+            case "pause":
+            case "resume":
+                return "at " + formatBytes(e.getLong("downloaded"));
+            case "chunk-done":
+                return chunk(e) + ", " + formatBytes(e.getLong("bytes")) + " this run";
+            case "finished":
+                return (e.getBoolean("success") ? "completed" : "failed") + ", " + formatBytes(e.getLong("bytes"))
+                        + " after " + formatDuration(e.getDuration("runTime"))
+                        + (e.getString("message") != null ? " (" + e.getString("message") + ")" : "");
+            case "gc":
+                return e.getString("name") + ", longest pause " + formatDuration(e.getDuration("longestPause"));
+            case "fsync":
+                return String.valueOf(e.getString("path"));
+            default:
+                return "";
+        }
+    }
+
+    private static String chunk(RecordedEvent e) {
+        int id = e.getInt("chunkId");
+        return id == -1 ? "multi-range" : "chunk " + id;
+    }
+
+    private static String formatDuration(Duration d) {
+        return formatNanos(d.toNanos());
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000_000)
+            return String.format("%.1f us", nanos / 1e3);
+        if (nanos < 1_000_000_000)
+            return String.format("%.1f ms", nanos / 1e6);
+        return String.format("%.2f s", nanos / 1e9);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024)
+            return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        String pre = "KMGTPE".charAt(exp - 1) + "";
+        return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
+    }
+}
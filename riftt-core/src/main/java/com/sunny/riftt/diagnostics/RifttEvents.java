@@ -0,0 +1,147 @@
+package com.sunny.riftt.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder event types. Only {@link FlightEvents} touches them,
+ * and only after checking that the runtime has {@code jdk.jfr}.
+ */
+final class RifttEvents {
+
+    static final String PREFIX = "riftt.";
+
+    private RifttEvents() {
+    }
+
+    @Name(PREFIX + "ConnectionOpen")
+    @Label("Connection Open")
+    @Description("HTTP request sent and response headers received, including redirects")
+    @Category({ "riftt", "Network" })
+    @StackTrace(false)
+    static final class ConnectionOpen extends Event {
+        @Label("Download Id")
+        int downloadId;
+        @Label("Chunk Id")
+        @Description("-1 for a multi-range request")
+        int chunkId;
+        @Label("Host")
+        String host;
+        @Label("Redirects")
+        int redirects;
+        @Label("Status")
+        int status;
+    }
+
+    @Name(PREFIX + "FirstByte")
+    @Label("First Byte")
+    @Description("From the response headers to the first body bytes")
+    @Category({ "riftt", "Network" })
+    @StackTrace(false)
+    static final class FirstByte extends Event {
+        @Label("Download Id")
+        int downloadId;
+        @Label("Chunk Id")
+        int chunkId;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name(PREFIX + "Checkpoint")
+    @Label("Checkpoint")
+    @Description("Durable progress saved; chunk id -1 is the download's bitmap and manifest")
+    @Category({ "riftt", "Storage" })
+    @StackTrace(false)
+    static final class Checkpoint extends Event {
+        @Label("Download Id")
+        int downloadId;
+        @Label("Chunk Id")
+        int chunkId;
+        @Label("Offset")
+        @DataAmount
+        long offset;
+    }
+
+    @Name(PREFIX + "Retry")
+    @Label("Retry")
+    @Category({ "riftt", "Network" })
+    @StackTrace(false)
+    static final class Retry extends Event {
+        @Label("Download Id")
+        int downloadId;
+        @Label("Chunk Id")
+        int chunkId;
+        @Label("Attempt")
+        int attempt;
+        @Label("Host")
+        String host;
+        @Label("Message")
+        String message;
+    }
+
+    @Name(PREFIX + "Pause")
+    @Label("Download Pause")
+    @Category({ "riftt", "Lifecycle" })
+    @StackTrace(false)
+    static final class Pause extends Event {
+        @Label("Download Id")
+        int downloadId;
+        @Label("Downloaded")
+        @DataAmount
+        long downloaded;
+    }
+
+    @Name(PREFIX + "Resume")
+    @Label("Download Resume")
+    @Category({ "riftt", "Lifecycle" })
+    @StackTrace(false)
+    static final class Resume extends Event {
+        @Label("Download Id")
+        int downloadId;
+        @Label("Downloaded")
+        @DataAmount
+        long downloaded;
+    }
+
+    @Name(PREFIX + "ChunkComplete")
+    @Label("Chunk Complete")
+    @Description("Spans this run of the chunk when it was fetched on its own")
+    @Category({ "riftt", "Lifecycle" })
+    @StackTrace(false)
+    static final class ChunkComplete extends Event {
+        @Label("Download Id")
+        int downloadId;
+        @Label("Chunk Id")
+        int chunkId;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name(PREFIX + "DownloadComplete")
+    @Label("Download Complete")
+    @Category({ "riftt", "Lifecycle" })
+    @StackTrace(false)
+    static final class DownloadComplete extends Event {
+        @Label("Download Id")
+        int downloadId;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Success")
+        boolean success;
+        @Label("Message")
+        String message;
+        @Label("Run Time")
+        @Description("Since the download was started or last resumed")
+        @Timespan(Timespan.NANOSECONDS)
+        long runTime;
+    }
+}
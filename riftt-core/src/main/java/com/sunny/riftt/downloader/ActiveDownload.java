@@ -0,0 +1,97 @@
+package com.sunny.riftt.downloader;
+
+import com.sunny.riftt.model.ChunkSnapshot;
+import com.sunny.riftt.model.DownloadChunk;
+import com.sunny.riftt.storage.BlockBitmap;
+import com.sunny.riftt.storage.DownloadManifest;
+import com.sunny.riftt.utils.ThroughputMeter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Everything {@link DownloadManager} keeps in memory for one running download.
+ * A record is created when the download starts and dropped as a whole when it
+ * completes, fails, pauses or is canceled, so its parts cannot go out of sync.
+ */
+final class ActiveDownload {
+
+    final int id;
+    final DownloadManifest manifest;
+    final BlockBitmap bitmap; // null when the file size is unknown
+    final DownloadProgress progress;
+    // Fixed for the life of the record; each entry is written only by the task that owns it
+    final ChunkProgress[] chunks;
+    final long startNanos = System.nanoTime();
+    // Sampled by the progress reporter thread
+    final ThroughputMeter meter = new ThroughputMeter();
+    // Reporter-only: whether the last pass saw new bytes
+    boolean moving;
+
+    volatile List<DownloadTask> tasks = Collections.emptyList();
+    // Settles after the completion handler has run
+    volatile CompletableFuture<Void> future;
+    volatile boolean pausing;
+
+    // Guarded by this; once set, nothing may touch the download's files
+    private boolean retired;
+
+    ActiveDownload(int id, DownloadManifest manifest, BlockBitmap bitmap, DownloadProgress progress,
+            List<DownloadChunk> chunks) {
+        this.id = id;
+        this.manifest = manifest;
+        this.bitmap = bitmap;
+        this.progress = progress;
+        this.chunks = new ChunkProgress[chunks.size()];
+        for (int i = 0; i < this.chunks.length; i++) {
+            this.chunks[i] = new ChunkProgress(chunks.get(i));
+        }
+    }
+
+    /**
+     * Updates the speed of the download and of every chunk. Only called from
+     * the progress reporter.
+     */
+    void sample(long nowNanos) {
+        meter.sample(progress.getDownloadedBytes(), nowNanos);
+        for (ChunkProgress c : chunks) {
+            c.sample(nowNanos);
+        }
+    }
+
+    List<ChunkSnapshot> chunkSnapshots() {
+        List<ChunkSnapshot> snapshots = new ArrayList<>(chunks.length);
+        for (ChunkProgress c : chunks) {
+            snapshots.add(c.snapshot());
+        }
+        return snapshots;
+    }
+
+    void pause() {
+        pausing = true;
+        tasks.forEach(DownloadTask::pauseDownload);
+    }
+
+    void stop() {
+        tasks.forEach(DownloadTask::stopDownload);
+        CompletableFuture<Void> f = future;
+        if (f != null)
+            f.cancel(true);
+    }
+
+    /**
+     * Marks the record retired. Returns false if it already was.
+     */
+    synchronized boolean retire() {
+        if (retired)
+            return false;
+        retired = true;
+        return true;
+    }
+
+    synchronized boolean isRetired() {
+        return retired;
+    }
+}
@@ -0,0 +1,265 @@
+package com.sunny.riftt.downloader;
+
+import com.sunny.riftt.core.IDownloadRepository;
+import com.sunny.riftt.core.ILogger;
+import com.sunny.riftt.model.Download;
+import com.sunny.riftt.model.DownloadStatus;
+import com.sunny.riftt.model.DownloadSummary;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-through cache in front of an {@link IDownloadRepository}. Downloads
+ * that are in use live in memory and are the authoritative copy: reads are
+ * served from there and writes update memory first, then reach the delegate
+ * in order on a single background thread. Entries are dropped once a download
+ * reaches a final state.
+ * <p>
+ * Anything the cache cannot answer (lists, counts, bitmaps, misses) waits for
+ * pending writes before going to the delegate, so it never sees older data
+ * than the cache does.
+ */
+public class CachedDownloadRepository implements IDownloadRepository {
+
+    private final IDownloadRepository delegate;
+    private final ILogger logger;
+    private final ConcurrentHashMap<Integer, Download> live = new ConcurrentHashMap<>();
+    private final ExecutorService writer;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writesQueued = new AtomicLong();
+    private final AtomicLong writesFailed = new AtomicLong();
+
+    public CachedDownloadRepository(IDownloadRepository delegate, ILogger logger) {
+        this.delegate = delegate;
+        this.logger = logger;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "riftt-repo-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public int insertDownload(Download download) {
+        flush();
+        int id = delegate.insertDownload(download);
+        Download copy = copyOf(download);
+        copy.setId(id);
+        live.put(id, copy);
+        return id;
+    }
+
+    @Override
+    public void updateDownload(Download download) {
+        // Separate copies: the cached one keeps changing while the write is queued
+        cacheOrEvict(download.getId(), copyOf(download));
+        Download snapshot = copyOf(download);
+        writeBehind(() -> delegate.updateDownload(snapshot));
+    }
+
+    @Override
+    public void updateDownloadStatus(int downloadId, DownloadStatus status) {
+        Download cached = live.get(downloadId);
+        if (cached != null) {
+            synchronized (cached) {
+                cached.setStatus(status);
+            }
+            cacheOrEvict(downloadId, cached);
+        }
+        writeBehind(() -> delegate.updateDownloadStatus(downloadId, status));
+    }
+
+    @Override
+    public void updateEndTime(int downloadId, Timestamp endTime) {
+        Download cached = live.get(downloadId);
+        if (cached != null) {
+            synchronized (cached) {
+                cached.setEndTime(endTime);
+            }
+        }
+        writeBehind(() -> delegate.updateEndTime(downloadId, endTime));
+    }
+
+    @Override
+    public void updateDownloadedSize(int downloadId, long bytesToAdd) {
+        Download cached = live.get(downloadId);
+        if (cached != null) {
+            synchronized (cached) {
+                cached.setDownloadedSize(cached.getDownloadedSize() + bytesToAdd);
+            }
+        }
+        writeBehind(() -> delegate.updateDownloadedSize(downloadId, bytesToAdd));
+    }
+
+    @Override
+    public Download getDownloadById(int id) {
+        Download cached = live.get(id);
+        if (cached != null) {
+            hits.incrementAndGet();
+            synchronized (cached) {
+                return copyOf(cached);
+            }
+        }
+        misses.incrementAndGet();
+        flush();
+        Download loaded = delegate.getDownloadById(id);
+        if (loaded == null)
+            return null;
+        cacheOrEvict(id, copyOf(loaded));
+        return loaded;
+    }
+
+    @Override
+    public List<Download> getAllDownloads() {
+        flush();
+        return delegate.getAllDownloads();
+    }
+
+    @Override
+    public List<DownloadSummary> getDownloadSummaries(DownloadStatus status, int offset, int limit) {
+        flush();
+        return delegate.getDownloadSummaries(status, offset, limit);
+    }
+
+    @Override
+    public int countDownloads(DownloadStatus status) {
+        flush();
+        return delegate.countDownloads(status);
+    }
+
+    @Override
+    public List<DownloadSummary> searchArchive(String query, int offset, int limit) {
+        // Archived rows are never live, so nothing queued can affect them
+        return delegate.searchArchive(query, offset, limit);
+    }
+
+    @Override
+    public boolean deleteDownload(int id) {
+        live.remove(id);
+        flush();
+        return delegate.deleteDownload(id);
+    }
+
+    @Override
+    public void clearAllDownloads() {
+        live.clear();
+        flush();
+        delegate.clearAllDownloads();
+    }
+
+    @Override
+    public void saveBlockBitmap(int downloadId, int blockSize, byte[] bitmap) {
+        writeBehind(() -> delegate.saveBlockBitmap(downloadId, blockSize, bitmap));
+    }
+
+    @Override
+    public byte[] getBlockBitmap(int downloadId, int blockSize) {
+        flush();
+        return delegate.getBlockBitmap(downloadId, blockSize);
+    }
+
+    /**
+     * Blocks until every write queued so far has reached the delegate.
+     */
+    public void flush() {
+        try {
+            writer.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            // Writer already shut down; nothing left to wait for
+        }
+    }
+
+    /**
+     * Drains pending writes and stops the background thread.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS))
+                logger.error("Repository writer did not drain in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public long getWritesQueued() {
+        return writesQueued.get();
+    }
+
+    public long getWritesFailed() {
+        return writesFailed.get();
+    }
+
+    public int getCachedCount() {
+        return live.size();
+    }
+
+    private void cacheOrEvict(int id, Download download) {
+        DownloadStatus status = download.getStatus();
+        if (status == DownloadStatus.COMPLETED || status == DownloadStatus.CANCELED
+                || status == DownloadStatus.FAILED) {
+            live.remove(id);
+        } else {
+            live.put(id, download);
+        }
+    }
+
+    private void writeBehind(Runnable write) {
+        writesQueued.incrementAndGet();
+        try {
+            writer.execute(() -> {
+                try {
+                    write.run();
+                } catch (Exception e) {
+                    writesFailed.incrementAndGet();
+                    logger.error("Write-behind to repository failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // After close(), fall back to writing on the caller's thread
+            write.run();
+        }
+    }
+
+    private static Download copyOf(Download d) {
+        Download copy = new Download();
+        copy.setId(d.getId());
+        copy.setUrl(d.getUrl());
+        copy.setDownloadPath(d.getDownloadPath());
+        copy.setFilename(d.getFilename());
+        copy.setStatus(d.getStatus());
+        copy.setDownloadedSize(d.getDownloadedSize());
+        copy.setFileSize(d.getFileSize());
+        copy.setStartTime(d.getStartTime());
+        copy.setEndTime(d.getEndTime());
+        copy.setThreadCount(d.getThreadCount());
+        return copy;
+    }
+}
@@ -0,0 +1,55 @@
+package com.sunny.riftt.downloader;
+
+import com.sunny.riftt.model.ChunkSnapshot;
+import com.sunny.riftt.model.ChunkStatus;
+import com.sunny.riftt.model.DownloadChunk;
+import com.sunny.riftt.utils.ThroughputMeter;
+
+/**
+ * Live state of one chunk while its download runs. The owning task is the only
+ * writer of the offset and state, so updates are plain volatile stores and
+ * readers take snapshots without any lock. Unlike the chunk's saved offset,
+ * which only moves at checkpoints, the live offset follows every write.
+ */
+final class ChunkProgress {
+
+    final DownloadChunk chunk;
+    private volatile long offset;
+    private volatile ChunkStatus state;
+    // Sampled by the progress reporter thread
+    private final ThroughputMeter meter = new ThroughputMeter();
+
+    ChunkProgress(DownloadChunk chunk) {
+        this.chunk = chunk;
+        this.offset = chunk.getCurrentOffset();
+        boolean done = chunk.getEndByte() == -1
+                ? ChunkStatus.COMPLETED.name().equals(chunk.getStatus())
+                : chunk.getCurrentOffset() > chunk.getEndByte();
+        this.state = done ? ChunkStatus.COMPLETED : ChunkStatus.PENDING;
+    }
+
+    void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    void setState(ChunkStatus state) {
+        this.state = state;
+    }
+
+    /**
+     * Feeds the current offset to the speed meter.
+     */
+    void sample(long nowNanos) {
+        if (state == ChunkStatus.DOWNLOADING)
+            meter.sample(offset, nowNanos);
+        else
+            meter.reset(offset, nowNanos);
+    }
+
+    ChunkSnapshot snapshot() {
+        ChunkStatus s = state;
+        // The last sample may predate the chunk finishing
+        double speed = s == ChunkStatus.DOWNLOADING ? meter.getSpeed() : 0;
+        return new ChunkSnapshot(chunk.getId(), chunk.getStartByte(), chunk.getEndByte(), offset, speed, s);
+    }
+}
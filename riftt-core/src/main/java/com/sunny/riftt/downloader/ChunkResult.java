@@ -4,14 +4,21 @@ public final class ChunkResult {
     public final int taskId;
     public final long bytesWritten;
     public final int attempts;
+    // The task stopped early because the download was paused
+    public final boolean paused;
 
     public Throwable error;
 
     public ChunkResult(int taskId, long bytesWritten, int attempts, Throwable error){
+        this(taskId, bytesWritten, attempts, error, false);
+    }
+
+    public ChunkResult(int taskId, long bytesWritten, int attempts, Throwable error, boolean paused){
         this.taskId = taskId;
         this.bytesWritten = bytesWritten;
         this.attempts = attempts;
         this.error = error;
+        this.paused = paused;
     }
 
     public int getAttempts() {
@@ -34,4 +41,8 @@ public final class ChunkResult {
         return taskId;
     }
 
+    public boolean isPaused() {
+        return paused;
+    }
+
 }
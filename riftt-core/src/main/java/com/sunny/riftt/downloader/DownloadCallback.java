@@ -9,6 +9,14 @@ public interface DownloadCallback {
 
     void onProgress(int id, long downloaded, long total, double progress);
 
+    /**
+     * Transfer rate of a running download, in bytes per second, sent along
+     * with its periodic progress. The ETA is -1 when it cannot be estimated;
+     * a stalled download reports a speed of 0.
+     */
+    default void onSpeed(int id, double bytesPerSecond, double averageBytesPerSecond, long etaSeconds) {
+    }
+
     void onDownloadCompleted(int id);
 
     void onDownloadFailed(int id, String message);
@@ -0,0 +1,368 @@
+package com.sunny.riftt.downloader;
+
+import com.sunny.riftt.core.ILogger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers download events to any number of {@link DownloadCallback}
+ * listeners on a dedicated dispatcher thread, so a slow listener never holds
+ * up a download thread. Listeners either hear about every download or
+ * subscribe to a single id.
+ * <p>
+ * Progress events are merged: only the latest one per download is kept and
+ * they go out at most once per {@link #FRAME_INTERVAL_MS}, so they take at
+ * most one slot per download however fast they are published. Once a download
+ * completes, fails or is cancelled its progress is discarded until it starts
+ * again, so no progress frame arrives after the final event.
+ * <p>
+ * Lifecycle events (start, pause, completion, failure, cancel) are never
+ * merged or dropped: listeners rely on them to leave a state. They go through
+ * a bounded queue; when it is full the publisher waits for the dispatcher to
+ * make room. A listener publishing from inside a delivery cannot wait on its
+ * own thread, so its events go to an overflow list delivered next.
+ */
+public class DownloadEventBus {
+
+    public static final long FRAME_INTERVAL_MS = 33L;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private enum Type {
+        START, PAUSE, RESUME, PROGRESS, COMPLETED, FAILED, CANCELLED, UNSUBSCRIBE
+    }
+
+    private static final class Event {
+        final Type type;
+        final int id;
+        final long downloaded;
+        final long total;
+        final double progress;
+        final String message;
+        // Progress only; speed is negative when the publisher did not measure it
+        final double speed;
+        final double averageSpeed;
+        final long eta;
+
+        Event(Type type, int id, long downloaded, long total, double progress, String message) {
+            this(type, id, downloaded, total, progress, message, -1, -1, -1);
+        }
+
+        Event(Type type, int id, long downloaded, long total, double progress, String message, double speed,
+                double averageSpeed, long eta) {
+            this.type = type;
+            this.id = id;
+            this.downloaded = downloaded;
+            this.total = total;
+            this.progress = progress;
+            this.message = message;
+            this.speed = speed;
+            this.averageSpeed = averageSpeed;
+            this.eta = eta;
+        }
+    }
+
+    private final ILogger logger;
+    private final List<DownloadCallback> listeners = new CopyOnWriteArrayList<>();
+    private final Map<Integer, List<DownloadCallback>> downloadListeners = new ConcurrentHashMap<>();
+    private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Dispatcher thread only
+    private final Deque<Event> overflow = new ArrayDeque<>();
+    private final ConcurrentHashMap<Integer, Event> pendingProgress = new ConcurrentHashMap<>();
+    // Downloads past their final event; their progress is discarded
+    private final Set<Integer> finished = ConcurrentHashMap.newKeySet();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong listenerErrors = new AtomicLong();
+
+    public DownloadEventBus(ILogger logger) {
+        this.logger = logger;
+        this.dispatcher = new Thread(this::dispatchLoop, "riftt-events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Subscribes to the events of every download.
+     */
+    public void subscribe(DownloadCallback listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Subscribes to the events of one download.
+     */
+    public void subscribe(int downloadId, DownloadCallback listener) {
+        downloadListeners.computeIfAbsent(downloadId, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public void unsubscribe(DownloadCallback listener) {
+        listeners.remove(listener);
+        for (List<DownloadCallback> l : downloadListeners.values()) {
+            l.remove(listener);
+        }
+    }
+
+    /**
+     * Drops the listeners of one download once the events published before
+     * this call have been delivered to them.
+     */
+    public void unsubscribeAll(int downloadId) {
+        if (!running) {
+            downloadListeners.remove(downloadId);
+            finished.remove(downloadId);
+            return;
+        }
+        offer(new Event(Type.UNSUBSCRIBE, downloadId, 0, 0, 0, null));
+    }
+
+    public void publishStart(int id) {
+        finished.remove(id);
+        enqueue(Type.START, id, null);
+    }
+
+    public void publishPause(int id) {
+        enqueue(Type.PAUSE, id, null);
+    }
+
+    public void publishResume(int id) {
+        finished.remove(id);
+        enqueue(Type.RESUME, id, null);
+    }
+
+    public void publishProgress(int id, long downloaded, long total, double progress) {
+        publishProgress(new Event(Type.PROGRESS, id, downloaded, total, progress, null));
+    }
+
+    /**
+     * Publishes progress together with the measured transfer rate, which
+     * listeners receive through {@link DownloadCallback#onSpeed}.
+     */
+    public void publishProgress(int id, long downloaded, long total, double progress, double speed,
+            double averageSpeed, long etaSeconds) {
+        publishProgress(new Event(Type.PROGRESS, id, downloaded, total, progress, null, speed, averageSpeed,
+                etaSeconds));
+    }
+
+    private void publishProgress(Event event) {
+        published.incrementAndGet();
+        if (finished.contains(event.id)) {
+            merged.incrementAndGet();
+            return;
+        }
+        if (pendingProgress.put(event.id, event) != null) {
+            merged.incrementAndGet();
+        }
+    }
+
+    public void publishCompleted(int id) {
+        finish(id);
+        enqueue(Type.COMPLETED, id, null);
+    }
+
+    public void publishFailed(int id, String message) {
+        finish(id);
+        enqueue(Type.FAILED, id, message);
+    }
+
+    public void publishCancelled(int id) {
+        finish(id);
+        enqueue(Type.CANCELLED, id, null);
+    }
+
+    // Progress still waiting for a frame would otherwise go out after the final event
+    private void finish(int id) {
+        finished.add(id);
+        pendingProgress.remove(id);
+    }
+
+    /**
+     * Delivers what is still queued and stops the dispatcher thread.
+     */
+    public void close() {
+        running = false;
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getMerged() {
+        return merged.get();
+    }
+
+    /**
+     * Events published after {@link #close()}, which are never delivered.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Lifecycle events whose publisher had to wait for room in the queue.
+     */
+    public long getWaited() {
+        return waited.get();
+    }
+
+    public long getListenerErrors() {
+        return listenerErrors.get();
+    }
+
+    public int getQueueDepth() {
+        return queue.size() + overflow.size() + pendingProgress.size();
+    }
+
+    private void enqueue(Type type, int id, String message) {
+        published.incrementAndGet();
+        if (!running) {
+            dropped.incrementAndGet();
+            logger.error("Event bus closed, dropped " + type + " for download " + id);
+            return;
+        }
+        offer(new Event(type, id, 0, 0, 0, message));
+    }
+
+    private void offer(Event event) {
+        if (queue.offer(event))
+            return;
+        if (Thread.currentThread() == dispatcher) {
+            overflow.add(event);
+            return;
+        }
+        waited.incrementAndGet();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (queue.offer(event, FRAME_INTERVAL_MS, TimeUnit.MILLISECONDS))
+                        return;
+                } catch (InterruptedException e) {
+                    // Download threads are interrupted on pause and cancel; the event still has to go out
+                    interrupted = true;
+                }
+                if (!running) {
+                    dropped.incrementAndGet();
+                    logger.error("Event bus closed, dropped " + event.type + " for download " + event.id);
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatchLoop() {
+        long nextFrame = System.currentTimeMillis() + FRAME_INTERVAL_MS;
+        while (running || !queue.isEmpty() || !overflow.isEmpty() || !pendingProgress.isEmpty()) {
+            try {
+                long wait = Math.max(0, nextFrame - System.currentTimeMillis());
+                Event event = overflow.poll();
+                if (event == null)
+                    event = running ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                if (event != null) {
+                    dispatch(event);
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextFrame || !running) {
+                    for (Integer id : pendingProgress.keySet()) {
+                        Event progress = pendingProgress.remove(id);
+                        if (progress != null && !finished.contains(id))
+                            deliver(progress);
+                    }
+                    nextFrame = now + FRAME_INTERVAL_MS;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void dispatch(Event event) {
+        if (event.type == Type.UNSUBSCRIBE) {
+            pendingProgress.remove(event.id);
+            downloadListeners.remove(event.id);
+            finished.remove(event.id);
+            return;
+        }
+        // Progress published before a state change must not arrive after it
+        Event progress = pendingProgress.remove(event.id);
+        if (progress != null)
+            deliver(progress);
+        deliver(event);
+    }
+
+    private void deliver(Event event) {
+        for (DownloadCallback listener : listeners) {
+            deliver(listener, event);
+        }
+        List<DownloadCallback> forDownload = downloadListeners.get(event.id);
+        if (forDownload != null) {
+            for (DownloadCallback listener : forDownload) {
+                deliver(listener, event);
+            }
+        }
+        delivered.incrementAndGet();
+    }
+
+    private void deliver(DownloadCallback listener, Event e) {
+        try {
+            switch (e.type) {
+                case START:
+                    listener.onStart(e.id);
+                    break;
+                case PAUSE:
+                    listener.onPause(e.id);
+                    break;
+                case RESUME:
+                    listener.onResume(e.id);
+                    break;
+                case PROGRESS:
+                    listener.onProgress(e.id, e.downloaded, e.total, e.progress);
+                    if (e.speed >= 0)
+                        listener.onSpeed(e.id, e.speed, e.averageSpeed, e.eta);
+                    break;
+                case COMPLETED:
+                    listener.onDownloadCompleted(e.id);
+                    break;
+                case FAILED:
+                    listener.onDownloadFailed(e.id, e.message);
+                    break;
+                case CANCELLED:
+                    listener.onDownloadCancelled(e.id);
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception ex) {
+            listenerErrors.incrementAndGet();
+            logger.error("Listener failed on " + e.type + " for download " + e.id, ex);
+        }
+    }
+}
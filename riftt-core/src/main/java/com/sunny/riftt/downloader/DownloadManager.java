@@ -4,55 +4,124 @@ import com.sunny.riftt.core.IChunkRepository;
 import com.sunny.riftt.core.IDownloadRepository;
 import com.sunny.riftt.core.ILogger;
 import com.sunny.riftt.core.ISettingsProvider;
+import com.sunny.riftt.diagnostics.FlightEvents;
+import com.sunny.riftt.exceptions.InsufficientSpaceException;
+import com.sunny.riftt.management.ManagementRegistration;
+import com.sunny.riftt.metrics.MetricsRegistry;
+import com.sunny.riftt.model.ChunkSnapshot;
 import com.sunny.riftt.model.Download;
 import com.sunny.riftt.model.DownloadChunk;
+import com.sunny.riftt.model.DownloadSnapshot;
 import com.sunny.riftt.model.DownloadStatus;
+import com.sunny.riftt.model.DownloadSummary;
+import com.sunny.riftt.storage.BlockBitmap;
+import com.sunny.riftt.storage.DownloadManifest;
+import com.sunny.riftt.storage.FileSyncer;
+import com.sunny.riftt.storage.SpaceReservations;
+import com.sunny.riftt.utils.IntObjectMap;
+import com.sunny.riftt.utils.ThroughputMeter;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DownloadManager {
 
-    private final IDownloadRepository downloadRepo;
+    // Resumed chunks with at most this much left are fetched together in one multi-range request
+    private static final long SMALL_SPAN_BYTES = 512L * 1024;
+    private static final int MAX_RANGES_PER_REQUEST = 32;
+    // Longest stretch PERIODIC durability lets checkpoints run ahead of the disk
+    private static final long PERIODIC_SYNC_INTERVAL_MS = 1000L;
+    // How often progress is persisted and published to listeners
+    private static final long PROGRESS_INTERVAL_MS = 150L;
+
+    private final CachedDownloadRepository downloadRepo;
     private final IChunkRepository chunkRepo;
     private final ISettingsProvider settings;
     private final ILogger logger;
 
-    private final ExecutorService executorService;
-    private final Map<Integer, CompletableFuture<Void>> activeDownloads;
-    private final Map<Integer, List<DownloadTask>> activeTasks;
-    private final ConcurrentHashMap<Integer, AtomicLong> downloadProgress = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Integer, AtomicLong> totalDownloadedInMem = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Integer, Long> lastReportedTime = new ConcurrentHashMap<>();
-
-    private final Map<Integer, DownloadCallback> callbacks = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executorService;
+    // One record per running (or still pausing) download; guarded by itself
+    private final IntObjectMap<ActiveDownload> active = new IntObjectMap<>();
+    // Ids between the active check in startDownload and their record going in; guarded by active
+    private final Set<Integer> starting = new HashSet<>();
+    private final ScheduledExecutorService progressReporter;
+    private final SpaceReservations spaceReservations = new SpaceReservations();
+    // Bytes received by all downloads since startup, and how fast that grows
+    private final LongAdder receivedTotal = new LongAdder();
+    private final ThroughputMeter totalMeter = new ThroughputMeter();
+    private final TransferStats transferStats = new TransferStats();
+
+    private final DownloadEventBus eventBus;
+    private final ManagementRegistration management; // null when JMX is unavailable or turned off
 
     public DownloadManager(IDownloadRepository downloadRepo,
             IChunkRepository chunkRepo,
             ISettingsProvider settings,
             ILogger logger) {
-        this.downloadRepo = downloadRepo;
+        // Hot-path reads of active downloads are served from memory
+        this.downloadRepo = new CachedDownloadRepository(downloadRepo, logger);
         this.chunkRepo = chunkRepo;
         this.settings = settings;
         this.logger = logger;
+        this.eventBus = new DownloadEventBus(logger);
 
         int maxConcurrent = settings.getMaxConcurrentDownloads();
         int threadsPerDownload = settings.getThreadsPerDownload();
-        // Fixed thread pool shared across all downloads
-        this.executorService = Executors.newFixedThreadPool(maxConcurrent * Math.max(threadsPerDownload, 16));
-        this.activeDownloads = new ConcurrentHashMap<>();
-        this.activeTasks = new ConcurrentHashMap<>();
+        // Fixed thread pool shared across all downloads; resizable at runtime through setPoolSize
+        int poolSize = maxConcurrent * Math.max(threadsPerDownload, 16);
+        this.executorService = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+
+        // Tasks only bump counters; one thread persists and reports for all downloads
+        this.progressReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "riftt-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        progressReporter.scheduleWithFixedDelay(this::reportProgress, PROGRESS_INTERVAL_MS, PROGRESS_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+
+        this.management = registerManagement();
+        registerGauges();
 
         logger.log("DownloadManager initialized with " + maxConcurrent + " threads");
     }
 
+    // A later manager in the same process takes the gauges over
+    private void registerGauges() {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge("riftt_active_downloads", "Downloads currently running", this::getActiveCount);
+        metrics.gauge("riftt_pool_threads", "Worker threads for chunk tasks", this::getPoolSize);
+        metrics.gauge("riftt_pool_busy_threads", "Worker threads running a chunk task", this::getBusyThreads);
+        metrics.gauge("riftt_pool_queue_length", "Chunk tasks waiting for a worker thread", this::getPoolQueueLength);
+        metrics.gauge("riftt_open_connections", "HTTP connections held by download tasks",
+                transferStats::getOpenConnections);
+        metrics.gauge("riftt_download_speed_bytes", "Combined download speed in bytes per second",
+                this::getTotalSpeed);
+        metrics.gauge("riftt_event_queue_depth", "Download events waiting for delivery", eventBus::getQueueDepth);
+    }
+
+    private ManagementRegistration registerManagement() {
+        try {
+            return ManagementRegistration.register(this, logger);
+        } catch (LinkageError e) {
+            // Runtime without the java.management module
+            logger.error("JMX not available: " + e);
+            return null;
+        }
+    }
+
     public int addDownload(Download download, DownloadCallback callback) {
-        logger.log("addDownload called for URL: " + download.getUrl());
+        logger.debug(() -> "addDownload called for URL: " + download.getUrl());
         download.setStatus(DownloadStatus.PENDING);
         download.setDownloadedSize(0L);
         download.setStartTime(new Timestamp(System.currentTimeMillis()));
@@ -61,66 +130,162 @@ public class DownloadManager {
         download.setId(downloadId);
 
         if (callback != null) {
-            callbacks.put(downloadId, callback);
+            eventBus.subscribe(downloadId, callback);
         }
 
         return downloadId;
     }
 
+    /**
+     * Subscribes to the events of one download.
+     */
     public void registerCallback(int id, DownloadCallback callback) {
         if (callback != null) {
-            callbacks.put(id, callback);
+            eventBus.subscribe(id, callback);
         }
     }
 
+    /**
+     * Subscribes to the events of every download. Listeners run on the event
+     * dispatcher thread, never on a download thread.
+     */
+    public void addListener(DownloadCallback listener) {
+        eventBus.subscribe(listener);
+    }
+
+    public void removeListener(DownloadCallback listener) {
+        eventBus.unsubscribe(listener);
+    }
+
     public void startDownload(int id) {
-        logger.log("startDownload called for ID: " + id);
+        logger.debug(() -> "startDownload called for ID: " + id);
+        ActiveDownload activeDownload = null;
+        boolean claimed = false;
         try {
             Download download = downloadRepo.getDownloadById(id);
             if (download == null) {
                 throw new Exception("Download not found");
             }
 
-            if (activeDownloads.containsKey(id)) {
-                logger.log("Download " + id + " is already active.");
+            // Checking for a record and claiming the id is one step, so two starts
+            // cannot both build one
+            ActiveDownload current;
+            synchronized (active) {
+                current = active.get(id);
+                claimed = current == null && starting.add(id);
+            }
+            if (current == null && !claimed) {
+                logger.log("Download " + id + " is already starting.");
+                return;
+            }
+            if (current != null) {
+                CompletableFuture<Void> draining = current.future;
+                if (current.pausing && draining != null) {
+                    // Tasks of the previous run still own the chunks; start once they have
+                    // returned and the record is gone. Marked as running so that a pause
+                    // meanwhile is not ignored and drops the deferred start.
+                    logger.log("Download " + id + " is still pausing, resume deferred.");
+                    downloadRepo.updateDownloadStatus(id, DownloadStatus.DOWNLOADING);
+                    draining.whenComplete((v, ex) -> startAfterDrain(id, ex));
+                } else {
+                    logger.log("Download " + id + " is already active.");
+                }
                 return;
             }
 
-            List<DownloadChunk> chunks = chunkRepo.getChunksForDownload(id);
+            // The sidecar manifest carries the newest chunk offsets, so it wins over
+            // the chunk table, but only if it was written for this download and
+            // these very chunks
+            List<DownloadChunk> stored = chunkRepo.getChunksForDownload(id);
+            DownloadManifest manifest = DownloadManifest.read(download.getDownloadPath(), id);
+            if (manifest != null && (!manifest.getUrl().equals(download.getUrl())
+                    || !sameChunkIds(manifest.getChunks(), stored))) {
+                logger.log("Ignoring manifest at " + download.getDownloadPath() + " not written for download " + id);
+                manifest = null;
+            }
+            List<DownloadChunk> chunks = manifest != null ? manifest.getChunks() : stored;
+            BlockBitmap bitmap;
 
             // If new download (or legacy without chunks), init chunks
             if (chunks.isEmpty()) {
+                Download owner = pathOwner(download.getDownloadPath(), id);
+                if (owner != null) {
+                    throw new Exception("File " + download.getDownloadPath() + " is in use by download "
+                            + owner.getId());
+                }
                 logger.log("Initializing chunks for ID: " + id);
-                initializeNewDownload(download, chunks, id);
+                manifest = initializeNewDownload(download, chunks, id);
+                bitmap = download.getFileSize() > 0
+                        ? new BlockBitmap(download.getFileSize(), BlockBitmap.DEFAULT_BLOCK_SIZE)
+                        : null;
             } else {
                 logger.log("Resuming existing chunks for ID: " + id);
+                adoptLegacyFile(download);
+                bitmap = loadBlockBitmap(download, chunks, manifest);
+                if (manifest == null) {
+                    manifest = new DownloadManifest(id, download.getDownloadPath(), download.getUrl(), null, null,
+                            download.getFileSize(), chunks);
+                }
                 resumeExistingDownload(download, chunks, id);
             }
+            if (bitmap != null) {
+                manifest.setBitmap(bitmap);
+            }
+            activeDownload = new ActiveDownload(id, manifest, bitmap,
+                    new DownloadProgress(download.getDownloadedSize(), download.getFileSize(), receivedTotal), chunks);
+            synchronized (active) {
+                active.put(id, activeDownload);
+            }
+            manifest.write();
+
+            String partPath = DownloadManifest.partPath(download.getDownloadPath());
+            reserveAndPreallocate(download, partPath);
 
             List<DownloadTask> tasks = new ArrayList<>();
             List<CompletableFuture<ChunkResult>> chunkFutures = new ArrayList<>();
 
-            downloadProgress.computeIfAbsent(id, k -> new AtomicLong(download.getDownloadedSize()));
-            totalDownloadedInMem.put(id, new AtomicLong(download.getDownloadedSize()));
-            lastReportedTime.put(id, System.currentTimeMillis());
-
-            // Create tasks ONLY for incomplete chunks
-            for (DownloadChunk chunk : chunks) {
+            // Create tasks ONLY for incomplete chunks. Small leftover spans are
+            // grouped so that they cost one multi-range round-trip instead of one each.
+            List<ChunkProgress> smallSpans = new ArrayList<>();
+            List<List<ChunkProgress>> taskChunks = new ArrayList<>();
+            for (ChunkProgress live : activeDownload.chunks) {
+                DownloadChunk chunk = live.chunk;
                 // Check for endByte != -1 before comparing offset
                 if (chunk.getEndByte() != -1 && chunk.getCurrentOffset() > chunk.getEndByte()) {
                     continue; // Chunk completed
                 }
+                if (chunk.getEndByte() != -1 && chunk.getCurrentOffset() > chunk.getStartByte()
+                        && chunk.getEndByte() - chunk.getCurrentOffset() + 1 <= SMALL_SPAN_BYTES) {
+                    smallSpans.add(live);
+                } else {
+                    taskChunks.add(Collections.singletonList(live));
+                }
+            }
+            for (int i = 0; i < smallSpans.size(); i += MAX_RANGES_PER_REQUEST) {
+                taskChunks.add(smallSpans.subList(i, Math.min(smallSpans.size(), i + MAX_RANGES_PER_REQUEST)));
+            }
+
+            // One syncer per download so fsyncs from all of its chunks are batched
+            FileSyncer fileSyncer = new FileSyncer(settings.getDurabilityMode(), PERIODIC_SYNC_INTERVAL_MS);
 
+            for (List<ChunkProgress> group : taskChunks) {
                 DownloadTask task = new DownloadTask(
-                        this,
+                        activeDownload.progress,
                         id,
                         download.getUrl(),
-                        download.getDownloadPath(),
-                        chunk,
+                        partPath,
+                        manifest.getIfRange(),
+                        group,
                         chunkRepo,
+                        bitmap,
+                        fileSyncer,
+                        transferStats,
                         logger);
                 tasks.add(task);
-
+            }
+            // Published before any task runs so that a pause always reaches all of them
+            activeDownload.tasks = tasks;
+            for (DownloadTask task : tasks) {
                 // Submit using CompletableFuture
                 CompletableFuture<ChunkResult> future = CompletableFuture.supplyAsync(task::call, executorService);
                 chunkFutures.add(future);
@@ -128,20 +293,19 @@ public class DownloadManager {
 
             if (chunkFutures.isEmpty()) {
                 logger.log("No chunk futures created for ID: " + id + ". Checking completion immediately.");
-                handleDownloadCompletion(id, true, null);
+                handleDownloadCompletion(activeDownload, true, null);
             } else {
-                activeTasks.put(id, tasks);
+                ActiveDownload started = activeDownload;
 
                 // Combine all futures
                 CompletableFuture<Void> allFutures = CompletableFuture.allOf(
                         chunkFutures.toArray(new CompletableFuture[0]));
 
-                activeDownloads.put(id, allFutures);
-
-                // Attach completion handler
-                allFutures.whenComplete((v, ex) -> {
+                // Attach completion handler; the tracked future settles only after it ran
+                CompletableFuture<Void> settled = allFutures.whenComplete((v, ex) -> {
                     // Collect results
                     boolean allSuccess = true;
+                    boolean paused = false;
                     String failMessage = null;
 
                     if (ex != null) {
@@ -158,6 +322,7 @@ public class DownloadManager {
                                     failMessage = res.getError().getMessage();
                                     break;
                                 }
+                                paused |= res.isPaused();
                             } catch (Exception e) {
                                 allSuccess = false;
                                 failMessage = "Task execution failed";
@@ -166,25 +331,183 @@ public class DownloadManager {
                         }
                     }
 
+                    if (allSuccess && paused) {
+                        handleDownloadPaused(started);
+                        return;
+                    }
                     if (failMessage == null)
                         failMessage = "Unknown error";
-                    handleDownloadCompletion(id, allSuccess, allSuccess ? null : failMessage);
+                    handleDownloadCompletion(started, allSuccess, allSuccess ? null : failMessage);
                 });
+                activeDownload.future = settled;
             }
 
+        } catch (InsufficientSpaceException e) {
+            discard(activeDownload);
+            downloadRepo.updateDownloadStatus(id, DownloadStatus.FAILED);
+            eventBus.publishFailed(id, e.getMessage());
+            logger.error("Start download failed for ID " + id, e);
         } catch (Exception e) {
-            DownloadCallback cb = callbacks.get(id);
-            if (cb != null)
-                cb.onDownloadFailed(id, e.getMessage());
+            discard(activeDownload);
+            eventBus.publishFailed(id, e.getMessage());
             logger.error("Start download failed for ID " + id, e);
+        } finally {
+            if (claimed) {
+                synchronized (active) {
+                    starting.remove(id);
+                }
+            }
         }
     }
 
-    private void initializeNewDownload(Download download, List<DownloadChunk> chunks, int id) throws Exception {
+    /**
+     * Runs a start that was deferred until a pausing download drained, unless
+     * the download was removed, canceled or paused again in the meantime.
+     * Canceling and removing stop the drain early by canceling it, before the
+     * status or the row has changed, so that is checked first.
+     */
+    private void startAfterDrain(int id, Throwable drainError) {
+        if (drainError instanceof CancellationException)
+            return;
+        Download download = downloadRepo.getDownloadById(id);
+        if (download == null)
+            return;
+        DownloadStatus status = download.getStatus();
+        if (status == DownloadStatus.CANCELED || status == DownloadStatus.PAUSED) {
+            logger.log("Download " + id + " is " + status + ", deferred resume dropped.");
+            return;
+        }
+        startDownload(id);
+    }
+
+    private static boolean sameChunkIds(List<DownloadChunk> a, List<DownloadChunk> b) {
+        if (a.size() != b.size())
+            return false;
+        Set<Integer> ids = new HashSet<>();
+        for (DownloadChunk c : a) {
+            ids.add(c.getId());
+        }
+        for (DownloadChunk c : b) {
+            if (!ids.contains(c.getId()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the unfinished download, other than {@code exceptId}, that
+     * saves to {@code path} and so may still write its partial file, or null
+     * if there is none.
+     */
+    private Download pathOwner(String path, int exceptId) {
+        for (Download d : downloadRepo.getAllDownloads()) {
+            if (d.getId() != exceptId && path.equals(d.getDownloadPath())
+                    && d.getStatus() != DownloadStatus.COMPLETED && d.getStatus() != DownloadStatus.CANCELED)
+                return d;
+        }
+        return null;
+    }
+
+    /**
+     * Whether a new download saving to {@code path} would collide with an
+     * existing file, the partial file or manifest of an unfinished download,
+     * or any download the manager knows about.
+     */
+    public boolean isPathInUse(String path) {
+        if (new File(path).exists() || new File(DownloadManifest.partPath(path)).exists()
+                || new File(DownloadManifest.manifestPath(path)).exists())
+            return true;
+        for (Download d : downloadRepo.getAllDownloads()) {
+            if (path.equals(d.getDownloadPath()))
+                return true;
+        }
+        return false;
+    }
+
+    private ActiveDownload getActive(int id) {
+        synchronized (active) {
+            return active.get(id);
+        }
+    }
+
+    private List<ActiveDownload> activeSnapshot() {
+        synchronized (active) {
+            return active.values();
+        }
+    }
+
+    /**
+     * Drops the record and its space reservation. A record that was already
+     * replaced or dropped is left alone.
+     */
+    private void release(ActiveDownload a) {
+        boolean removed;
+        synchronized (active) {
+            removed = active.remove(a.id, a);
+        }
+        if (removed)
+            spaceReservations.release(a.id);
+    }
+
+    /**
+     * Stops a download without saving anything more: its tasks are told to
+     * stop and the reporter leaves it alone from now on.
+     */
+    private void discard(ActiveDownload a) {
+        if (a == null)
+            return;
+        a.retire();
+        a.stop();
+        release(a);
+    }
+
+    /**
+     * Reserves the bytes this download still needs on its volume and grows the
+     * file to its final length, so that a full disk fails the download before
+     * any transfer starts rather than half way through. Where growing the file
+     * allocates its space, the bytes still needed are only those the file does
+     * not already hold, and the reservation is used up once it has grown.
+     */
+    private void reserveAndPreallocate(Download download, String partPath)
+            throws InsufficientSpaceException, IOException {
+        long fileSize = download.getFileSize();
+        if (fileSize <= 0)
+            return;
+
+        File part = new File(partPath);
+        boolean allocates = spaceReservations.allocatesOnExtend(partPath);
+        long needed = allocates ? fileSize - (part.exists() ? part.length() : 0)
+                : fileSize - download.getDownloadedSize();
+        spaceReservations.reserve(download.getId(), partPath, needed);
+        try (RandomAccessFile file = new RandomAccessFile(partPath, "rw")) {
+            if (file.length() < fileSize) {
+                file.setLength(fileSize);
+            }
+        }
+        if (allocates)
+            spaceReservations.consume(download.getId(), needed);
+    }
+
+    /**
+     * Downloads started before the .part layout wrote straight into the final
+     * path; move that partial file aside so that it is resumed, not mistaken
+     * for a finished one.
+     */
+    private void adoptLegacyFile(Download download) throws IOException {
+        File finalFile = new File(download.getDownloadPath());
+        File part = new File(DownloadManifest.partPath(download.getDownloadPath()));
+        if (!part.exists() && finalFile.isFile()) {
+            logger.log("Moving legacy partial file to " + part.getName());
+            DownloadManifest.moveAtomically(finalFile.toPath(), part.toPath());
+        }
+    }
+
+    private DownloadManifest initializeNewDownload(Download download, List<DownloadChunk> chunks, int id)
+            throws Exception {
         download.setDownloadedSize(0L);
         download.setStatus(DownloadStatus.DOWNLOADING);
 
-        FileDownloader fileDownloader = new FileDownloader();
+        FileDownloader fileDownloader = new FileDownloader(logger);
         long fileSize = fileDownloader.getFileSize(download.getUrl());
         download.setFileSize(fileSize);
 
@@ -200,12 +523,14 @@ public class DownloadManager {
                 // Single chunk
                 chunks.add(new DownloadChunk(id, 0, fileSize - 1));
             } else {
-                // Multi chunk
+                // Multi chunk, boundaries aligned to bitmap blocks so no block spans two chunks
                 int threads = settings.getThreadsPerDownload();
-                long chunkSize = fileSize / threads;
-                for (int i = 0; i < threads; i++) {
+                long blockSize = BlockBitmap.DEFAULT_BLOCK_SIZE;
+                long chunkSize = Math.max(blockSize, (fileSize / threads) / blockSize * blockSize);
+                int chunkCount = (int) Math.min(threads, (fileSize + chunkSize - 1) / chunkSize);
+                for (int i = 0; i < chunkCount; i++) {
                     long start = i * chunkSize;
-                    long end = (i == threads - 1) ? fileSize - 1 : (i + 1) * chunkSize - 1;
+                    long end = (i == chunkCount - 1) ? fileSize - 1 : (i + 1) * chunkSize - 1;
                     chunks.add(new DownloadChunk(id, start, end));
                 }
             }
@@ -216,16 +541,80 @@ public class DownloadManager {
 
         // Note: keeping these logs as they are critical for determining chunk init
         // success
-        logger.log("Loaded " + chunks.size() + " chunks from DB for ID: " + id);
+        logger.debug(() -> "Loaded " + chunks.size() + " chunks from DB for ID: " + id);
 
         if (chunks.isEmpty()) {
             logger.error("CRITICAL: Chunks list is empty after creation for ID: " + id);
         }
 
-        DownloadCallback callback = callbacks.get(id);
-        if (callback != null) {
-            callback.onStart(id);
-            callback.onProgress(id, 0, fileSize, 0);
+        eventBus.publishStart(id);
+        eventBus.publishProgress(id, 0, fileSize, 0);
+
+        return new DownloadManifest(id, download.getDownloadPath(), download.getUrl(), fileDownloader.getEtag(),
+                fileDownloader.getLastModified(), fileSize, chunks);
+    }
+
+    /**
+     * Loads the persisted block bitmap and rewinds every chunk to its first
+     * block that is not known to be on disk. Downloads that predate the bitmap
+     * get a fresh one seeded from their saved offsets, rounded down to a block.
+     */
+    private BlockBitmap loadBlockBitmap(Download download, List<DownloadChunk> chunks, DownloadManifest manifest) {
+        long fileSize = download.getFileSize();
+        if (fileSize <= 0)
+            return null;
+
+        int blockSize = BlockBitmap.DEFAULT_BLOCK_SIZE;
+        byte[] saved = manifest != null ? manifest.getBitmap(blockSize) : null;
+        if (saved == null) {
+            saved = downloadRepo.getBlockBitmap(download.getId(), blockSize);
+        }
+
+        BlockBitmap bitmap;
+        if (saved != null) {
+            bitmap = BlockBitmap.fromBytes(fileSize, blockSize, saved);
+        } else {
+            bitmap = new BlockBitmap(fileSize, blockSize);
+            for (DownloadChunk c : chunks) {
+                bitmap.markDurable(c.getStartByte(), c.getCurrentOffset());
+            }
+        }
+
+        for (DownloadChunk c : chunks) {
+            if (c.getEndByte() == -1)
+                continue;
+            long verified = bitmap.firstMissingOffset(c.getStartByte(), c.getEndByte());
+            if (verified != c.getCurrentOffset()) {
+                logger.log("Chunk " + c.getId() + " rewound from " + c.getCurrentOffset() + " to " + verified);
+                c.setCurrentOffset(verified);
+                chunkRepo.updateChunkProgress(c.getId(), verified,
+                        verified > c.getEndByte() ? "COMPLETED" : "PENDING");
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Saves the block bitmap and rewrites the sidecar manifest. Periodic calls
+     * only write when new blocks became durable; {@code force} always writes.
+     */
+    private void persistCheckpoint(ActiveDownload a, boolean force) {
+        BlockBitmap bitmap = a.bitmap;
+        boolean dirty = bitmap != null && bitmap.takeDirty();
+        if (!dirty && !force)
+            return;
+        Object span = FlightEvents.beginCheckpoint();
+        try {
+            if (dirty) {
+                downloadRepo.saveBlockBitmap(a.id, bitmap.getBlockSize(), bitmap.toByteArray());
+            }
+            if (bitmap != null) {
+                a.manifest.setBitmap(bitmap);
+            }
+            a.manifest.write();
+            FlightEvents.checkpoint(span, a.id, -1, a.progress.getDownloadedBytes());
+        } catch (Exception e) {
+            logger.error("Checkpoint failed for ID " + a.id, e);
         }
     }
 
@@ -239,149 +628,184 @@ public class DownloadManager {
                 totalDownloaded += (current - start);
             }
         }
-        downloadProgress.put(id, new AtomicLong(0));
-        totalDownloadedInMem.put(id, new AtomicLong(totalDownloaded));
         download.setDownloadedSize(totalDownloaded);
         download.setStatus(DownloadStatus.DOWNLOADING);
         downloadRepo.updateDownload(download);
 
-        DownloadCallback callback = callbacks.get(id);
-        if (callback != null) {
-            callback.onResume(id);
-            if (download.getFileSize() > 0) {
-                double prog = (totalDownloaded * 100.0) / download.getFileSize();
-                callback.onProgress(id, totalDownloaded, download.getFileSize(), Math.min(100, Math.ceil(prog)));
-            } else {
-                callback.onProgress(id, totalDownloaded, -1, 0);
-            }
+        eventBus.publishResume(id);
+        FlightEvents.resumed(id, totalDownloaded);
+        if (download.getFileSize() > 0) {
+            double prog = (totalDownloaded * 100.0) / download.getFileSize();
+            eventBus.publishProgress(id, totalDownloaded, download.getFileSize(), Math.min(100, Math.ceil(prog)));
+        } else {
+            eventBus.publishProgress(id, totalDownloaded, -1, 0);
+        }
+    }
+
+    /**
+     * Runs once every task of a paused download has checkpointed and returned:
+     * saves the final bitmap and manifest and drops the in-memory state, so a
+     * paused download holds no threads, connections or reservations.
+     */
+    private void handleDownloadPaused(ActiveDownload a) {
+        try {
+            // Canceled or removed while pausing: the files are gone, nothing to save
+            if (retireProgress(a))
+                persistCheckpoint(a, true);
+        } finally {
+            release(a);
+            logger.log("Download " + a.id + " paused, all tasks released.");
         }
     }
 
-    private void handleDownloadCompletion(int downloadId, boolean allSuccess, String failMessage) {
+    private void handleDownloadCompletion(ActiveDownload a, boolean allSuccess, String failMessage) {
+        int downloadId = a.id;
         // Run in executor or specific thread if needed, but here is fine
         try {
-            flushProgressIfAny(downloadId);
+            // Canceled or removed meanwhile; that path already cleaned up
+            if (!retireProgress(a))
+                return;
 
             Download download = downloadRepo.getDownloadById(downloadId);
             // If already canceled, ignore
-            if (download.getStatus() == DownloadStatus.CANCELED)
+            if (download == null || download.getStatus() == DownloadStatus.CANCELED)
                 return;
 
             long totalSize = download.getFileSize();
-            File file = new File(download.getDownloadPath());
+            File part = new File(DownloadManifest.partPath(download.getDownloadPath()));
 
+            // A preallocated .part always has the full length, so success is decided
+            // by chunk state and the block bitmap; the length check only catches truncation
             boolean sizeMatched;
             if (totalSize == -1) {
-                sizeMatched = file.exists() && file.length() > 0;
+                sizeMatched = part.exists() && part.length() > 0;
                 if (allSuccess && sizeMatched) {
-                    totalSize = file.length();
+                    totalSize = part.length();
                     download.setFileSize(totalSize);
                 }
             } else {
-                sizeMatched = (file.exists() && file.length() == totalSize);
+                sizeMatched = (part.exists() && part.length() == totalSize);
             }
 
-            boolean finalSuccess = allSuccess && sizeMatched;
+            boolean verified = sizeMatched && isFullyWritten(a, totalSize);
+            boolean finalSuccess = allSuccess && verified;
 
             if (!sizeMatched) {
-                long diskSize = file.exists() ? file.length() : -1;
+                long diskSize = part.exists() ? part.length() : -1;
                 // Only log mismatch if we were expecting success and size was known/fixed
                 if (totalSize != -1 && diskSize != totalSize) {
                     logger.error("Size mismatch for ID " + downloadId + "! Disk=" + diskSize + " total=" + totalSize);
                 }
                 if (allSuccess)
                     failMessage = "Size Mismatch";
+            } else if (allSuccess && !verified) {
+                logger.error("Incomplete data for ID " + downloadId + " despite all tasks finishing");
+                failMessage = "Incomplete Download";
             }
 
             if (!finalSuccess) {
+                persistCheckpoint(a, true);
                 // Stop any lingering tasks just in case
-                List<DownloadTask> tasks = activeTasks.get(downloadId);
-                if (tasks != null) {
-                    tasks.forEach(DownloadTask::stopDownload);
-                }
+                a.tasks.forEach(DownloadTask::stopDownload);
                 download.setStatus(DownloadStatus.FAILED);
             } else {
+                // Only a verified file ever appears under its final name
+                DownloadManifest.moveAtomically(part.toPath(), new File(download.getDownloadPath()).toPath());
+                DownloadManifest.delete(download.getDownloadPath());
                 download.setStatus(DownloadStatus.COMPLETED);
                 download.setDownloadedSize(totalSize);
             }
 
             download.setEndTime(new Timestamp(System.currentTimeMillis()));
             downloadRepo.updateDownload(download);
-
-            activeDownloads.remove(downloadId);
-            activeTasks.remove(downloadId);
-            activeDownloads.remove(downloadId);
-            activeTasks.remove(downloadId);
-            lastReportedTime.remove(downloadId);
-            downloadProgress.remove(downloadId);
-            totalDownloadedInMem.remove(downloadId);
-
-            DownloadCallback cb = callbacks.get(downloadId);
-            if (cb != null) {
-                if (finalSuccess) {
-                    cb.onProgress(downloadId, totalSize, totalSize, 100.0);
-                    cb.onDownloadCompleted(downloadId);
-                } else {
-                    cb.onDownloadFailed(downloadId, failMessage != null ? failMessage : "Unknown Error");
-                }
+            release(a);
+
+            String result = finalSuccess ? "completed" : "failed";
+            MetricsRegistry metrics = MetricsRegistry.getDefault();
+            metrics.histogram("riftt_download_duration_seconds", "Time from starting or resuming a download to its end",
+                    "result", result).recordSince(a.startNanos);
+            metrics.counter("riftt_downloads_total", "Downloads that ran to an end", "result", result).increment();
+            FlightEvents.downloadCompleted(downloadId, a.progress.getDownloadedBytes(), finalSuccess, failMessage,
+                    System.nanoTime() - a.startNanos);
+
+            if (finalSuccess) {
+                eventBus.publishProgress(downloadId, totalSize, totalSize, 100.0);
+                eventBus.publishCompleted(downloadId);
+            } else {
+                eventBus.publishFailed(downloadId, failMessage != null ? failMessage : "Unknown Error");
             }
 
         } catch (Exception e) {
             logger.error("Error handling completion for ID " + downloadId, e);
+            release(a);
         }
     }
 
+    private boolean isFullyWritten(ActiveDownload a, long totalSize) {
+        for (DownloadChunk c : a.manifest.getChunks()) {
+            boolean done = c.getEndByte() == -1
+                    ? "COMPLETED".equals(c.getStatus())
+                    : c.getCurrentOffset() > c.getEndByte();
+            if (!done)
+                return false;
+        }
+        BlockBitmap bitmap = a.bitmap;
+        return bitmap == null || bitmap.firstMissingOffset(0, totalSize - 1) == totalSize;
+    }
+
     public void pauseDownload(int id) throws Exception {
         Download download = downloadRepo.getDownloadById(id);
-        if (download.getStatus() == DownloadStatus.PAUSED)
+        DownloadStatus status = download.getStatus();
+        if (status == DownloadStatus.PAUSED || status == DownloadStatus.COMPLETED
+                || status == DownloadStatus.CANCELED)
             return;
 
-        List<DownloadTask> tasks = activeTasks.get(id);
-        if (tasks != null) {
-            tasks.forEach(DownloadTask::pauseDownload);
-        }
-
         download.setStatus(DownloadStatus.PAUSED);
         downloadRepo.updateDownload(download);
 
-        // Remove from active downloads so it can be resumed
-        activeDownloads.remove(id); // Future will complete effectively
-        activeTasks.remove(id);
-
-        DownloadCallback callback = callbacks.get(id);
-        if (callback != null) {
-            callback.onPause(id);
+        // Tasks checkpoint and return on their own; handleDownloadPaused then
+        // saves the checkpoint and drops the record
+        ActiveDownload a = getActive(id);
+        if (a != null) {
+            a.pause();
         }
+        FlightEvents.paused(id, a != null ? a.progress.getDownloadedBytes() : download.getDownloadedSize());
+
+        eventBus.publishPause(id);
     }
 
     public void removeDownload(int id) {
         try {
-            cancelDownloadFutures(id);
-
-            List<DownloadTask> tasks = activeTasks.get(id);
-            if (tasks != null) {
-                tasks.forEach(DownloadTask::stopDownload);
-            }
-
-            activeDownloads.remove(id);
-            activeTasks.remove(id);
-            activeTasks.remove(id);
-            downloadProgress.remove(id);
-            totalDownloadedInMem.remove(id);
-            callbacks.remove(id);
+            discard(getActive(id));
+            eventBus.unsubscribeAll(id);
 
+            Download download = downloadRepo.getDownloadById(id);
             downloadRepo.deleteDownload(id);
+            if (download != null)
+                deleteSidecars(download);
 
         } catch (Exception e) {
             logger.error("Remove download failed for ID " + id, e);
         }
     }
 
+    /**
+     * Deletes the partial file and manifest of an unfinished download. A
+     * completed file under the final name is left alone.
+     */
+    private static void deleteSidecars(Download download) {
+        new File(DownloadManifest.partPath(download.getDownloadPath())).delete();
+        DownloadManifest.delete(download.getDownloadPath());
+    }
+
     public void removeAllDownloads() {
         try {
-            List<Integer> ids = new ArrayList<>(activeDownloads.keySet());
-            for (Integer id : ids) {
-                removeDownload(id);
+            for (ActiveDownload a : activeSnapshot()) {
+                removeDownload(a.id);
+            }
+            // Paused and pending downloads leave their partial files behind too
+            for (Download download : downloadRepo.getAllDownloads()) {
+                deleteSidecars(download);
             }
             downloadRepo.clearAllDownloads();
         } catch (Exception e) {
@@ -394,9 +818,6 @@ public class DownloadManager {
             Download download = downloadRepo.getDownloadById(id);
             if (download != null && download.getStatus() == DownloadStatus.COMPLETED)
                 return;
-            if (activeDownloads.containsKey(id))
-                return; // Already running
-
             startDownload(id); // Re-trigger start logic which handles resume
 
         } catch (Exception e) {
@@ -408,13 +829,7 @@ public class DownloadManager {
     public void cancelDownload(int id) {
         try {
             downloadRepo.updateDownloadStatus(id, DownloadStatus.CANCELED);
-            cancelDownloadFutures(id);
-
-            List<DownloadTask> tasks = activeTasks.get(id);
-            if (tasks != null) {
-                tasks.forEach(DownloadTask::stopDownload);
-                activeTasks.remove(id);
-            }
+            discard(getActive(id));
 
             Download download = downloadRepo.getDownloadById(id);
             if (download != null) {
@@ -422,16 +837,11 @@ public class DownloadManager {
                 if (file.exists()) {
                     file.delete();
                 }
+                deleteSidecars(download);
             }
 
-            DownloadCallback cb = callbacks.get(id);
-            if (cb != null)
-                cb.onDownloadCancelled(id);
-
-            callbacks.remove(id);
-            downloadProgress.remove(id);
-            totalDownloadedInMem.remove(id);
-            lastReportedTime.remove(id);
+            eventBus.publishCancelled(id);
+            eventBus.unsubscribeAll(id);
 
         } catch (Exception e) {
             logger.error("Cancel failed for ID " + id, e);
@@ -439,14 +849,6 @@ public class DownloadManager {
         }
     }
 
-    private void cancelDownloadFutures(int id) {
-        CompletableFuture<Void> future = activeDownloads.get(id);
-        if (future != null) {
-            future.cancel(true);
-            activeDownloads.remove(id);
-        }
-    }
-
     public void shutDown() {
         logger.log("Shutting down DownloadManager...");
         executorService.shutdown();
@@ -457,65 +859,202 @@ public class DownloadManager {
         } catch (InterruptedException e) {
             executorService.shutdownNow();
         }
+        progressReporter.shutdownNow();
+        for (ActiveDownload a : activeSnapshot()) {
+            retireProgress(a);
+        }
+        if (management != null)
+            management.unregister();
+        eventBus.close();
+        // Queued repository writes must land before the database is closed
+        downloadRepo.close();
         logger.log("DownloadManager shutdown complete");
     }
 
-    public void onChunkProgress(int downloadId, long deltaBytes) {
-        if (deltaBytes <= 0)
-            return;
-
-        AtomicLong acc = downloadProgress.computeIfAbsent(downloadId, k -> new AtomicLong(0L));
-        long newAccum = acc.addAndGet(deltaBytes);
-
-        // Update in-memory total
-        AtomicLong memTotal = totalDownloadedInMem.computeIfAbsent(downloadId, k -> new AtomicLong(0L));
-        memTotal.addAndGet(deltaBytes);
-
-        long now = System.currentTimeMillis();
-        long lastReported = lastReportedTime.getOrDefault(downloadId, 0L);
-        final long FLUSH_INTERVAL_MS = 150L;
-
-        if (now - lastReported >= FLUSH_INTERVAL_MS) {
-            long toFlush = acc.getAndSet(0L);
-            if (toFlush > 0) {
-                try {
-                    downloadRepo.updateDownloadedSize(downloadId, toFlush);
-                    DownloadCallback cb = callbacks.get(downloadId);
-                    if (cb != null) {
-                        Download d = downloadRepo.getDownloadById(downloadId);
-                        long totalInMem = totalDownloadedInMem.get(downloadId).get();
-                        double prog = (totalInMem * 100.0) / d.getFileSize();
-                        cb.onProgress(downloadId, totalInMem, d.getFileSize(),
-                                Math.min(100, Math.ceil(prog)));
-                    }
-                    lastReportedTime.put(downloadId, now);
-                } catch (Exception e) {
-                    acc.addAndGet(toFlush);
-                    logger.error("DB Update failed for ID " + downloadId, e);
-                }
+    /**
+     * Runs on the reporter thread: persists the bytes each running download
+     * received since the last pass and reports its progress.
+     */
+    private void reportProgress() {
+        long now = System.nanoTime();
+        totalMeter.sample(receivedTotal.sum(), now);
+        for (ActiveDownload a : activeSnapshot()) {
+            a.sample(now);
+            DownloadProgress p = a.progress;
+            boolean moved;
+            // Holding the record keeps a finishing download from moving its files mid-checkpoint
+            synchronized (a) {
+                if (a.isRetired())
+                    continue;
+                moved = flushProgress(a.id, p);
+                if (moved)
+                    persistCheckpoint(a, false);
             }
+            // A stall is reported once, as a speed of 0
+            if (!moved && !a.moving)
+                continue;
+            a.moving = moved;
+            double speed = moved ? a.meter.getSpeed() : 0;
+            long eta = moved ? a.meter.getEtaSeconds(p.getRemainingBytes()) : -1;
+            eventBus.publishProgress(a.id, p.getDownloadedBytes(), p.getFileSize(), p.getPercent(), speed,
+                    a.meter.getAverageSpeed(), eta);
         }
     }
 
-    private void flushProgressIfAny(int downloadId) {
-        AtomicLong acc = downloadProgress.get(downloadId);
-        if (acc == null)
-            return;
-        long toFlush = acc.getAndSet(0L);
-        if (toFlush > 0) {
-            try {
-                downloadRepo.updateDownloadedSize(downloadId, toFlush);
-            } catch (Exception e) {
-                acc.addAndGet(toFlush);
-                logger.error("Final flush failed for ID " + downloadId, e);
-            }
+    /**
+     * Stops reporting a download and writes its last bytes. Once this returns
+     * the reporter no longer touches the download's bitmap or manifest.
+     * Returns false if the record had already been retired.
+     */
+    private boolean retireProgress(ActiveDownload a) {
+        synchronized (a) {
+            if (!a.retire())
+                return false;
+            flushProgress(a.id, a.progress);
+            return true;
+        }
+    }
+
+    /**
+     * Writes the bytes received since the last flush. Returns whether there
+     * were any.
+     */
+    private boolean flushProgress(int downloadId, DownloadProgress p) {
+        long toFlush = p.takeUnpersisted();
+        if (toFlush <= 0)
+            return false;
+        try {
+            downloadRepo.updateDownloadedSize(downloadId, toFlush);
+            // These bytes now count against the free space instead
+            spaceReservations.consume(downloadId, toFlush);
+        } catch (Exception e) {
+            p.restore(toFlush);
+            logger.error("DB Update failed for ID " + downloadId, e);
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isIdle() {
+        synchronized (active) {
+            return active.isEmpty();
+        }
+    }
+
+    public int getActiveCount() {
+        synchronized (active) {
+            return active.size();
         }
     }
 
+    /**
+     * Worker threads shared by the chunk tasks of all downloads.
+     */
+    public int getPoolSize() {
+        return executorService.getMaximumPoolSize();
+    }
+
+    /**
+     * Resizes the worker pool. Shrinking lets running tasks finish; the extra
+     * threads exit once idle.
+     */
+    public void setPoolSize(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("Pool size must be at least 1: " + size);
+        // The core size may never exceed the maximum, so order the two updates
+        if (size > executorService.getMaximumPoolSize()) {
+            executorService.setMaximumPoolSize(size);
+            executorService.setCorePoolSize(size);
+        } else {
+            executorService.setCorePoolSize(size);
+            executorService.setMaximumPoolSize(size);
+        }
+        logger.log("Worker pool resized to " + size);
+    }
+
+    public int getBusyThreads() {
+        return executorService.getActiveCount();
+    }
+
+    /**
+     * Chunk tasks waiting for a free worker thread.
+     */
+    public int getPoolQueueLength() {
+        return executorService.getQueue().size();
+    }
+
+    public long getCompletedTaskCount() {
+        return executorService.getCompletedTaskCount();
+    }
+
+    public TransferStats getTransferStats() {
+        return transferStats;
+    }
+
+    /**
+     * Current progress of every running download, straight from the in-memory
+     * counters. Cheap enough to call once per UI frame.
+     */
+    public List<DownloadSnapshot> getActiveSnapshots() {
+        List<ActiveDownload> records = activeSnapshot();
+        List<DownloadSnapshot> snapshots = new ArrayList<>(records.size());
+        for (ActiveDownload a : records) {
+            DownloadProgress p = a.progress;
+            snapshots.add(new DownloadSnapshot(a.id, p.getDownloadedBytes(), p.getFileSize(), a.meter.getSpeed(),
+                    a.meter.getAverageSpeed(), a.meter.getEtaSeconds(p.getRemainingBytes())));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Smoothed combined speed of all downloads, in bytes per second.
+     */
+    public double getTotalSpeed() {
+        return totalMeter.getSpeed();
+    }
+
+    /**
+     * Combined speed of all downloads over the last few seconds, in bytes per
+     * second.
+     */
+    public double getTotalWindowSpeed() {
+        return totalMeter.getWindowSpeed();
+    }
+
+    /**
+     * Live state of every chunk of a running download, read from memory
+     * without holding up its tasks. Empty if the download is not running;
+     * use {@link #getChunks(int)} for the saved state.
+     */
+    public List<ChunkSnapshot> getChunkSnapshots(int downloadId) {
+        ActiveDownload a = getActive(downloadId);
+        return a != null ? a.chunkSnapshots() : Collections.emptyList();
+    }
+
+    public DownloadEventBus getEventBus() {
+        return eventBus;
+    }
+
+    public CachedDownloadRepository getDownloadCache() {
+        return downloadRepo;
+    }
+
     public List<Download> getAllDownloads() {
         return downloadRepo.getAllDownloads();
     }
 
+    public List<DownloadSummary> getDownloadSummaries(DownloadStatus status, int offset, int limit) {
+        return downloadRepo.getDownloadSummaries(status, offset, limit);
+    }
+
+    public int countDownloads(DownloadStatus status) {
+        return downloadRepo.countDownloads(status);
+    }
+
+    public List<DownloadSummary> searchArchive(String query, int offset, int limit) {
+        return downloadRepo.searchArchive(query, offset, limit);
+    }
+
     public List<DownloadChunk> getChunks(int downloadId) {
         return chunkRepo.getChunksForDownload(downloadId);
     }
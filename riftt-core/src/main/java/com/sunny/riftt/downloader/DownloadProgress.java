@@ -0,0 +1,68 @@
+package com.sunny.riftt.downloader;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte counter for one running download. Tasks add to a striped
+ * {@link LongAdder}, so many threads can publish without contending on one
+ * value; the progress reporter samples it and persists what is new.
+ */
+public final class DownloadProgress {
+
+    private final long baseBytes;
+    private final long fileSize;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder sessionTotal; // shared by every download of the manager
+    // Guarded by this; only touched when persisting
+    private long persisted;
+
+    DownloadProgress(long baseBytes, long fileSize, LongAdder sessionTotal) {
+        this.baseBytes = baseBytes;
+        this.fileSize = fileSize;
+        this.sessionTotal = sessionTotal;
+    }
+
+    public void add(long bytes) {
+        received.add(bytes);
+        sessionTotal.add(bytes);
+    }
+
+    /**
+     * Bytes on disk for this download, including what earlier runs fetched.
+     */
+    public long getDownloadedBytes() {
+        return baseBytes + received.sum();
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Bytes left to fetch, or -1 when the file size is unknown.
+     */
+    public long getRemainingBytes() {
+        return fileSize > 0 ? Math.max(0, fileSize - getDownloadedBytes()) : -1;
+    }
+
+    public double getPercent() {
+        if (fileSize <= 0)
+            return 0;
+        return Math.min(100, Math.ceil(getDownloadedBytes() * 100.0 / fileSize));
+    }
+
+    /**
+     * Returns the bytes received since the last call and marks them persisted.
+     * Hand them back with {@link #restore(long)} if writing them failed.
+     */
+    synchronized long takeUnpersisted() {
+        long sum = received.sum();
+        long delta = sum - persisted;
+        persisted = sum;
+        return delta;
+    }
+
+    synchronized void restore(long bytes) {
+        persisted -= bytes;
+    }
+}
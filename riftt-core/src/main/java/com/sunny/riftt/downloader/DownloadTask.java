@@ -2,44 +2,318 @@ package com.sunny.riftt.downloader;
 
 import com.sunny.riftt.core.IChunkRepository;
 import com.sunny.riftt.core.ILogger;
+import com.sunny.riftt.diagnostics.FlightEvents;
+import com.sunny.riftt.metrics.Counter;
+import com.sunny.riftt.metrics.Histogram;
+import com.sunny.riftt.metrics.MetricsRegistry;
+import com.sunny.riftt.model.ChunkStatus;
 import com.sunny.riftt.model.DownloadChunk;
+import com.sunny.riftt.storage.BlockBitmap;
+import com.sunny.riftt.storage.FileSyncer;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Fetches one or more chunks of a download. A task never blocks while paused:
+ * pausing makes it checkpoint and return, releasing its pool thread and HTTP
+ * connection, and resuming schedules fresh tasks from the saved offsets.
+ */
 public class DownloadTask implements Callable<ChunkResult> {
 
+    // Lifecycle: RUNNING -> PAUSING -> PAUSED (task has returned), or -> STOPPING
+    static final int RUNNING = 0;
+    static final int PAUSING = 1;
+    static final int PAUSED = 2;
+    static final int STOPPING = 3;
+
+    // Bytes a task counts locally before publishing them to the shared counter
+    static final long PUBLISH_BYTES = 64 * 1024;
+    static final int BUFFER_SIZE = 8192;
+    // Only one read and write in this many is timed; the histograms are shared by every task
+    static final int TIMING_SAMPLE = 64;
+
+    private static final Histogram READ_TIME = MetricsRegistry.getDefault().histogram(
+            "riftt_chunk_read_seconds",
+            "Time of one socket read of a download task, 1 in " + TIMING_SAMPLE + " sampled");
+    private static final Histogram WRITE_TIME = MetricsRegistry.getDefault().histogram(
+            "riftt_chunk_write_seconds",
+            "Time of one file write of a download task, 1 in " + TIMING_SAMPLE + " sampled");
+    private static final Counter BYTES = MetricsRegistry.getDefault().counter(
+            "riftt_downloaded_bytes_total", "Bytes written by download tasks");
+
     private final String fileUrl;
     private final String savePath;
-    private final DownloadChunk chunk;
+    private final String ifRange;
+    private final List<ChunkProgress> chunks;
     private final IChunkRepository chunkRepo; // INTERFACE
-    private final DownloadManager downloadManager;
+    private final DownloadProgress progress;
     private final int downloadId;
     private final ILogger logger; // INTERFACE
+    private final BlockBitmap blockBitmap; // null when the file size is unknown
+    private final FileSyncer fileSyncer;
+    private final TransferStats stats;
+    private final String host;
 
-    private volatile boolean isPaused = false;
-    private volatile boolean isStopped = false;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    // Only touched by the thread running this task
+    private long unpublished;
+    private int reads;
 
-    public DownloadTask(DownloadManager downloadManager,
+    DownloadTask(DownloadProgress progress,
             int downloadId,
             String fileUrl,
             String saveFile,
-            DownloadChunk chunk,
+            String ifRange,
+            ChunkProgress chunk,
             IChunkRepository chunkRepo, // Inject Interface
+            BlockBitmap blockBitmap,
+            FileSyncer fileSyncer,
+            TransferStats stats,
+            ILogger logger) {
+        this(progress, downloadId, fileUrl, saveFile, ifRange, Collections.singletonList(chunk), chunkRepo,
+                blockBitmap, fileSyncer, stats, logger);
+    }
+
+    /**
+     * Creates a task that owns several chunks. The remaining span of every chunk
+     * is requested in a single multi-range request; whatever the server does not
+     * deliver that way is fetched with one range request per chunk.
+     */
+    DownloadTask(DownloadProgress progress,
+            int downloadId,
+            String fileUrl,
+            String saveFile,
+            String ifRange,
+            List<ChunkProgress> chunks,
+            IChunkRepository chunkRepo,
+            BlockBitmap blockBitmap,
+            FileSyncer fileSyncer,
+            TransferStats stats,
             ILogger logger) {
-        this.downloadManager = downloadManager;
+        this.progress = progress;
         this.downloadId = downloadId;
         this.fileUrl = fileUrl;
         this.savePath = saveFile;
-        this.chunk = chunk;
+        this.ifRange = ifRange;
+        this.chunks = chunks;
         this.chunkRepo = chunkRepo;
+        this.blockBitmap = blockBitmap;
+        this.fileSyncer = fileSyncer;
+        this.stats = stats;
+        this.host = TransferStats.hostOf(fileUrl);
         this.logger = logger;
     }
 
     @Override
     public ChunkResult call() {
+        try {
+            if (chunks.size() == 1) {
+                return downloadChunk(chunks.get(0));
+            }
+
+            fetchMultiRange();
+
+            // Single-range pass for anything the multi-range response did not cover
+            boolean paused = false;
+            for (ChunkProgress chunk : chunks) {
+                if (state.get() == STOPPING)
+                    break;
+                ChunkResult result = downloadChunk(chunk);
+                if (result.getError() != null)
+                    return result;
+                paused |= result.isPaused();
+            }
+            return new ChunkResult(chunks.get(0).chunk.getId(), 0, 0, null, paused);
+        } finally {
+            publishProgress();
+            state.compareAndSet(PAUSING, PAUSED);
+        }
+    }
+
+    /**
+     * Requests the remaining span of every owned chunk with one
+     * {@code Range: bytes=a-b,c-d,...} request and writes each returned part at
+     * its offset. Returns quietly when the server answers with anything other
+     * than multipart/byteranges so that the caller can fall back. Whatever was
+     * written before a pause, stop or error is synced and recorded; parts
+     * outside the requested spans end the response.
+     */
+    private void fetchMultiRange() {
+        List<ChunkProgress> pending = new ArrayList<>();
+        StringBuilder range = new StringBuilder("bytes=");
+        for (ChunkProgress live : chunks) {
+            DownloadChunk chunk = live.chunk;
+            if (chunk.getEndByte() == -1 || chunk.getCurrentOffset() > chunk.getEndByte())
+                continue;
+            if (!pending.isEmpty())
+                range.append(',');
+            range.append(chunk.getCurrentOffset()).append('-').append(chunk.getEndByte());
+            pending.add(live);
+        }
+        if (pending.size() < 2)
+            return;
+        long[][] spans = requestedSpans(pending);
+        for (ChunkProgress live : pending) {
+            live.setState(ChunkStatus.DOWNLOADING);
+        }
+
+        HttpURLConnection conn = null;
+        InputStream inputStream = null;
+        RandomAccessFile localFile = null;
+        byte[] buffer = null;
+        List<MultipartByteRanges.Part> written = new ArrayList<>();
+        MultipartByteRanges.Part current = null;
+        MultipartByteRanges.Part partial = null;
+        long position = 0;
+        try {
+            conn = openConnection(-1, range.toString());
+            int responseCode = conn.getResponseCode();
+            String boundary = MultipartByteRanges.boundaryOf(conn.getContentType());
+            if (responseCode != HttpURLConnection.HTTP_PARTIAL || boundary == null) {
+                logger.warn("Multi-range request for " + pending.size() + " spans answered with HTTP " + responseCode
+                        + ", falling back to single ranges");
+                return;
+            }
+
+            localFile = new RandomAccessFile(savePath, "rw");
+            inputStream = conn.getInputStream();
+            MultipartByteRanges parts = new MultipartByteRanges(inputStream, boundary);
+            buffer = acquireBuffer();
+
+            MultipartByteRanges.Part part;
+            while (state.get() == RUNNING && (part = parts.next()) != null) {
+                if (!isRequested(spans, part))
+                    throw new IOException("Server sent unrequested range " + part.start + "-" + part.end);
+                localFile.seek(part.start);
+                current = part;
+                position = part.start;
+                while (state.get() == RUNNING) {
+                    boolean timed = isTimed();
+                    long start = timed ? System.nanoTime() : 0;
+                    int n = parts.read(buffer, 0, buffer.length);
+                    if (n == -1)
+                        break;
+                    long read = timed ? System.nanoTime() : 0;
+                    localFile.write(buffer, 0, n);
+                    position += n;
+                    if (timed)
+                        recordTimes(start, read);
+                }
+                current = null;
+                if (position > part.end) {
+                    written.add(part);
+                } else {
+                    partial = writtenPart(part, position);
+                }
+            }
+        } catch (Exception e) {
+            if (current != null)
+                partial = writtenPart(current, position);
+            // Parts written so far are recorded below; the single-range pass picks up the rest
+            logger.error("Multi-range fetch failed for download " + downloadId + ": " + e.getMessage());
+        } finally {
+            if (localFile != null && (!written.isEmpty() || partial != null))
+                recordParts(localFile, pending, written, partial);
+            if (buffer != null)
+                stats.bufferReleased();
+            closeQuietly(inputStream);
+            disconnectQuietly(conn);
+            closeQuietly(localFile);
+        }
+    }
+
+    /**
+     * The requested spans sorted by start, with adjacent spans merged because
+     * a server may coalesce them into one part.
+     */
+    private static long[][] requestedSpans(List<ChunkProgress> pending) {
+        List<long[]> sorted = new ArrayList<>();
+        for (ChunkProgress live : pending) {
+            sorted.add(new long[] { live.chunk.getCurrentOffset(), live.chunk.getEndByte() });
+        }
+        sorted.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] span : sorted) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && span[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], span[1]);
+            } else {
+                merged.add(span);
+            }
+        }
+        return merged.toArray(new long[0][]);
+    }
+
+    private static boolean isRequested(long[][] spans, MultipartByteRanges.Part part) {
+        for (long[] span : spans) {
+            if (part.start >= span[0] && part.end <= span[1])
+                return true;
+        }
+        return false;
+    }
+
+    // The bytes of an interrupted part that reached the file, or null if none did
+    private static MultipartByteRanges.Part writtenPart(MultipartByteRanges.Part part, long position) {
+        return position > part.start ? new MultipartByteRanges.Part(part.start, position - 1) : null;
+    }
+
+    /**
+     * One fsync for all parts, then records them. An interrupted part only
+     * counts up to its last whole block, so the single-range pass resumes on a
+     * block boundary and can mark the rest.
+     */
+    private void recordParts(RandomAccessFile localFile, List<ChunkProgress> pending,
+            List<MultipartByteRanges.Part> written, MultipartByteRanges.Part partial) {
+        try {
+            fileSyncer.sync(localFile.getChannel());
+        } catch (IOException e) {
+            logger.error("Sync after multi-range fetch failed for download " + downloadId + ": " + e.getMessage());
+            return;
+        }
+        for (MultipartByteRanges.Part p : written) {
+            markBlocks(p.start, p.end + 1);
+            applyPart(pending, p);
+        }
+        if (partial != null) {
+            long durable = blockBitmap != null ? markBlocks(partial.start, partial.end + 1) : partial.end + 1;
+            if (durable > partial.start)
+                applyPart(pending, new MultipartByteRanges.Part(partial.start, durable - 1));
+        }
+    }
+
+    /**
+     * Advances every chunk whose next missing byte falls inside the part. A
+     * server may coalesce adjacent ranges, so one part can complete several chunks.
+     */
+    private void applyPart(List<ChunkProgress> pending, MultipartByteRanges.Part part) {
+        for (ChunkProgress live : pending) {
+            DownloadChunk chunk = live.chunk;
+            long offset = chunk.getCurrentOffset();
+            if (offset < part.start || offset > part.end || offset > chunk.getEndByte())
+                continue;
+            long newOffset = Math.min(part.end, chunk.getEndByte()) + 1;
+            chunk.setCurrentOffset(newOffset);
+            live.setOffset(newOffset);
+            if (newOffset > chunk.getEndByte()) {
+                chunk.setStatus("COMPLETED");
+                live.setState(ChunkStatus.COMPLETED);
+                FlightEvents.chunkCompleted(null, downloadId, chunk.getId(), newOffset - offset);
+            }
+            countProgress(newOffset - offset);
+            saveChunk(chunk.getId(), newOffset, newOffset > chunk.getEndByte() ? "COMPLETED" : "DOWNLOADING");
+        }
+    }
+
+    private ChunkResult downloadChunk(ChunkProgress live) {
+        DownloadChunk chunk = live.chunk;
         HttpURLConnection conn = null;
         InputStream inputStream = null;
         RandomAccessFile localFile = null;
@@ -48,37 +322,37 @@ public class DownloadTask implements Callable<ChunkResult> {
         long endByte = chunk.getEndByte();
 
         if (endByte != -1 && currentOffset > endByte) {
+            live.setState(ChunkStatus.COMPLETED);
             return new ChunkResult(chunk.getId(), 0, 0, null);
         }
 
+        // Chunks not started yet when a pause arrives keep their saved offset
+        if (state.get() != RUNNING) {
+            if (isPauseRequested())
+                live.setState(ChunkStatus.PAUSED);
+            return new ChunkResult(chunk.getId(), 0, 0, null, isPauseRequested());
+        }
+        live.setState(ChunkStatus.DOWNLOADING);
+        Object chunkSpan = FlightEvents.beginChunk();
+        long startOffset = currentOffset;
+
         int retryCount = 0;
         final int MAX_RETRIES = 5;
 
+        // Start of the written-but-not-yet-marked run for the block bitmap; it
+        // survives retries because bytes written before a failure stay valid
+        long durableFrom = currentOffset;
+        // Offset written when the last sync ticket was taken, or -1 if none is outstanding
+        long ticketOffset = -1;
+        long syncTicket = 0;
+        boolean completed = false;
+
+        byte[] buffer = null;
         try {
             localFile = new RandomAccessFile(savePath, "rw");
+            buffer = acquireBuffer();
 
-            while ((endByte == -1 || currentOffset <= endByte) && !isStopped) {
-
-                synchronized (this) {
-                    while (isPaused && !isStopped) {
-                        try {
-                            chunkRepo.updateChunkProgress(chunk.getId(), currentOffset, "PAUSED");
-                        } catch (Exception e) {
-                        }
-
-                        logger.log("Chunk " + chunk.getId() + " paused at " + currentOffset);
-                        wait();
-
-                        try {
-                            chunkRepo.updateChunkProgress(chunk.getId(), currentOffset, "DOWNLOADING");
-                        } catch (Exception e) {
-                        }
-                        logger.log("Chunk " + chunk.getId() + " resumed.");
-                    }
-                }
-                if (isStopped)
-                    break;
-
+            while ((endByte == -1 || currentOffset <= endByte) && state.get() == RUNNING) {
                 try {
                     String byteRange = null;
                     if (endByte != -1 || currentOffset > 0) {
@@ -87,7 +361,10 @@ public class DownloadTask implements Callable<ChunkResult> {
                                 : "bytes=" + currentOffset + "-" + endByte;
                     }
 
-                    conn = FileDownloader.safeOpenConnection(fileUrl, "GET", byteRange);
+                    // A connection whose body ended early is replaced, not left open
+                    closeQuietly(inputStream);
+                    disconnectQuietly(conn);
+                    conn = openConnection(chunk.getId(), byteRange);
 
                     int responseCode = conn.getResponseCode();
 
@@ -103,32 +380,24 @@ public class DownloadTask implements Callable<ChunkResult> {
 
                     inputStream = conn.getInputStream();
                     localFile.seek(currentOffset);
+                    Object firstByteSpan = FlightEvents.beginFirstByte();
 
-                    byte[] buffer = new byte[8192];
                     int bytesRead;
                     long bytesSinceLastSave = 0;
                     final long SAVE_INTERVAL = 64 * 1024;
 
-                    while ((endByte == -1 || currentOffset <= endByte) && !isStopped) {
-                        synchronized (this) {
-                            while (isPaused && !isStopped) {
-                                try {
-                                    chunkRepo.updateChunkProgress(chunk.getId(), currentOffset, "PAUSED");
-                                } catch (Exception e) {
-                                }
-                                wait();
-                                try {
-                                    chunkRepo.updateChunkProgress(chunk.getId(), currentOffset, "DOWNLOADING");
-                                } catch (Exception e) {
-                                }
-                            }
-                        }
-                        if (isStopped)
-                            break;
-
+                    // The only per-read cost of pause/stop support is this one volatile read
+                    while ((endByte == -1 || currentOffset <= endByte) && state.get() == RUNNING) {
+                        boolean timed = isTimed();
+                        long start = timed ? System.nanoTime() : 0;
                         bytesRead = inputStream.read(buffer);
+                        long read = timed ? System.nanoTime() : 0;
                         if (bytesRead == -1)
                             break;
+                        if (firstByteSpan != null) {
+                            FlightEvents.firstByte(firstByteSpan, downloadId, chunk.getId(), bytesRead);
+                            firstByteSpan = null;
+                        }
 
                         retryCount = 0;
                         int toWrite = bytesRead;
@@ -139,44 +408,102 @@ public class DownloadTask implements Callable<ChunkResult> {
                         }
 
                         localFile.write(buffer, 0, toWrite);
+                        if (timed)
+                            recordTimes(start, read);
                         currentOffset += toWrite;
+                        live.setOffset(currentOffset);
 
-                        downloadManager.onChunkProgress(downloadId, toWrite);
+                        countProgress(toWrite);
 
+                        // Offsets and block bits are only recorded once the syncer says the
+                        // bytes behind them are on disk. In PERIODIC mode that is either this
+                        // call's fsync or any task's fsync that began after our last ticket
                         bytesSinceLastSave += toWrite;
                         if (bytesSinceLastSave >= SAVE_INTERVAL) {
-                            chunkRepo.updateChunkProgress(chunk.getId(), currentOffset, "DOWNLOADING");
+                            Object checkpointSpan = FlightEvents.beginCheckpoint();
+                            long durable = -1;
+                            if (fileSyncer.checkpoint(localFile.getChannel())) {
+                                durable = currentOffset;
+                            } else if (ticketOffset >= 0 && fileSyncer.isCovered(syncTicket)) {
+                                durable = ticketOffset;
+                            }
+                            if (durable >= 0) {
+                                durableFrom = markBlocks(durableFrom, durable);
+                                chunk.setCurrentOffset(durable);
+                                saveChunk(chunk.getId(), durable, "DOWNLOADING");
+                                FlightEvents.checkpoint(checkpointSpan, downloadId, chunk.getId(), durable);
+                                ticketOffset = -1;
+                            }
+                            if (durable != currentOffset) {
+                                syncTicket = fileSyncer.ticket();
+                                ticketOffset = currentOffset;
+                            }
                             bytesSinceLastSave = 0;
                         }
 
                         if (toWrite < bytesRead)
                             break;
                     }
+                    if (state.get() != RUNNING)
+                        break;
 
                     if (endByte == -1 || currentOffset > endByte) {
-                        chunkRepo.updateChunkProgress(chunk.getId(), currentOffset, "COMPLETED");
+                        fileSyncer.sync(localFile.getChannel());
+                        markBlocks(durableFrom, currentOffset);
+                        chunk.setCurrentOffset(currentOffset);
+                        chunk.setStatus("COMPLETED");
+                        saveChunk(chunk.getId(), currentOffset, "COMPLETED");
+                        live.setState(ChunkStatus.COMPLETED);
+                        FlightEvents.chunkCompleted(chunkSpan, downloadId, chunk.getId(), currentOffset - startOffset);
+                        completed = true;
                         break;
                     }
 
                 } catch (Exception e) {
-                    if (isStopped)
+                    if (state.get() != RUNNING)
                         break;
                     retryCount++;
                     if (retryCount > MAX_RETRIES)
                         throw e;
 
-                    logger.error("Chunk " + chunk.getId() + " retry " + retryCount + ": " + e.getMessage());
+                    int attempt = retryCount;
+                    logger.warn(() -> "Chunk " + chunk.getId() + " retry " + attempt + ": " + e.getMessage());
+                    stats.retried(host);
+                    FlightEvents.retry(downloadId, chunk.getId(), retryCount, host, e.getMessage());
+                    MetricsRegistry.getDefault()
+                            .counter("riftt_chunk_retries_total", "Chunk download retries", "host", host)
+                            .increment();
 
                     closeQuietly(inputStream);
                     disconnectQuietly(conn);
+                    inputStream = null;
+                    conn = null;
 
                     Thread.sleep(Math.min(1000L * retryCount, 5000L));
                 }
             }
+
+            if (!completed && isPauseRequested()) {
+                // Make what was written durable and record it; resuming starts from here
+                Object checkpointSpan = FlightEvents.beginCheckpoint();
+                fileSyncer.sync(localFile.getChannel());
+                markBlocks(durableFrom, currentOffset);
+                chunk.setCurrentOffset(currentOffset);
+                chunk.setStatus("PAUSED");
+                saveChunk(chunk.getId(), currentOffset, "PAUSED");
+                FlightEvents.checkpoint(checkpointSpan, downloadId, chunk.getId(), currentOffset);
+                live.setState(ChunkStatus.PAUSED);
+                long pausedAt = currentOffset;
+                logger.debug(() -> "Chunk " + chunk.getId() + " paused at " + pausedAt);
+                return new ChunkResult(chunk.getId(), 0, 0, null, true);
+            }
         } catch (Exception e) {
             logger.error("Chunk " + chunk.getId() + " failed: " + e.getMessage());
+            live.setState(ChunkStatus.FAILED);
             return new ChunkResult(chunk.getId(), 0, 0, e);
         } finally {
+            if (buffer != null)
+                stats.bufferReleased();
             closeQuietly(inputStream);
             disconnectQuietly(conn);
             closeQuietly(localFile);
@@ -184,25 +511,78 @@ public class DownloadTask implements Callable<ChunkResult> {
         return new ChunkResult(chunk.getId(), 0, 0, null);
     }
 
-    public void pauseDownload() {
-        synchronized (this) {
-            isPaused = true;
-        }
+    private HttpURLConnection openConnection(int chunkId, String range) throws Exception {
+        Object span = FlightEvents.beginConnection();
+        int[] redirects = span != null ? new int[1] : null;
+        HttpURLConnection conn = FileDownloader.safeOpenConnection(fileUrl, "GET", range, ifRange, redirects);
+        stats.connectionOpened();
+        if (span != null)
+            FlightEvents.connectionOpened(span, downloadId, chunkId, host, redirects[0], conn.getResponseCode());
+        return conn;
+    }
+
+    private byte[] acquireBuffer() {
+        stats.bufferAcquired();
+        return new byte[BUFFER_SIZE];
+    }
+
+    private void saveChunk(int chunkId, long offset, String status) {
+        chunkRepo.updateChunkProgress(chunkId, offset, status);
+    }
+
+    private boolean isTimed() {
+        return ++reads % TIMING_SAMPLE == 0;
+    }
+
+    private static void recordTimes(long start, long read) {
+        READ_TIME.record(read - start);
+        WRITE_TIME.recordSince(read);
+    }
+
+    private void countProgress(long bytes) {
+        unpublished += bytes;
+        if (unpublished >= PUBLISH_BYTES)
+            publishProgress();
     }
 
-    public void resumeDownload() {
-        synchronized (this) {
-            isPaused = false;
-            notifyAll();
+    private void publishProgress() {
+        if (unpublished > 0) {
+            progress.add(unpublished);
+            BYTES.add(unpublished);
+            unpublished = 0;
         }
     }
 
+    /**
+     * Records the blocks completed in [from, to). Callers go through the
+     * FileSyncer first, so bits are only set for data that reached the disk
+     * (unless durability is turned off).
+     */
+    private long markBlocks(long from, long to) {
+        return blockBitmap != null ? blockBitmap.markDurable(from, to) : from;
+    }
+
+    /**
+     * Asks the task to checkpoint and return. Has no effect once it is stopping.
+     */
+    public void pauseDownload() {
+        state.compareAndSet(RUNNING, PAUSING);
+    }
+
     public void stopDownload() {
-        synchronized (this) {
-            isStopped = true;
-            isPaused = false;
-            notifyAll();
-        }
+        state.set(STOPPING);
+    }
+
+    /**
+     * True once a paused task has returned and no longer holds a thread.
+     */
+    public boolean isPaused() {
+        return state.get() == PAUSED;
+    }
+
+    private boolean isPauseRequested() {
+        int s = state.get();
+        return s == PAUSING || s == PAUSED;
     }
 
     private void closeQuietly(java.io.Closeable c) {
@@ -216,6 +596,7 @@ public class DownloadTask implements Callable<ChunkResult> {
 
     private void disconnectQuietly(HttpURLConnection c) {
         if (c != null) {
+            stats.connectionClosed();
             try {
                 c.disconnect();
             } catch (Exception ignored) {
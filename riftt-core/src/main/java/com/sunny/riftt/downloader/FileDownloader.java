@@ -1,5 +1,9 @@
 package com.sunny.riftt.downloader;
 
+import com.sunny.riftt.core.ILogger;
+import com.sunny.riftt.metrics.Histogram;
+import com.sunny.riftt.metrics.MetricsRegistry;
+
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.HashMap;
@@ -12,6 +16,11 @@ public class FileDownloader {
     private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) "
             + "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
 
+    private static final Histogram CONNECT_TIME = MetricsRegistry.getDefault().histogram(
+            "riftt_http_connect_seconds", "Time to open an HTTP connection, including TLS");
+    private static final Histogram FIRST_BYTE_TIME = MetricsRegistry.getDefault().histogram(
+            "riftt_http_ttfb_seconds", "Time from sending a request to receiving the response headers");
+
     public static void applyCommon(HttpURLConnection conn, String fileUrl) {
         conn.setConnectTimeout(10000);
         conn.setReadTimeout(30000);
@@ -28,6 +37,16 @@ public class FileDownloader {
 
     }
 
+    private final ILogger logger;
+
+    // Validators seen by the last getFileSize() call
+    private String etag;
+    private String lastModified;
+
+    public FileDownloader(ILogger logger) {
+        this.logger = logger;
+    }
+
     private boolean isOk(int code) {
         return code >= 200 && code < 300;
     }
@@ -45,6 +64,25 @@ public class FileDownloader {
 
     public static HttpURLConnection safeOpenConnection(String urlStr, String method, String rangeHeader)
             throws Exception {
+        return safeOpenConnection(urlStr, method, rangeHeader, null);
+    }
+
+    /**
+     * Same as {@link #safeOpenConnection(String, String, String)}, additionally
+     * sending {@code If-Range} so that the server returns the whole entity (200)
+     * instead of a range when the file changed since the validator was taken.
+     */
+    public static HttpURLConnection safeOpenConnection(String urlStr, String method, String rangeHeader,
+            String ifRange) throws Exception {
+        return safeOpenConnection(urlStr, method, rangeHeader, ifRange, null);
+    }
+
+    /**
+     * Same as {@link #safeOpenConnection(String, String, String, String)},
+     * storing the number of redirects followed in {@code redirects[0]}.
+     */
+    static HttpURLConnection safeOpenConnection(String urlStr, String method, String rangeHeader,
+            String ifRange, int[] redirects) throws Exception {
         int redirectCount = 0;
         Map<String, String> cookieMap = new HashMap<>();
 
@@ -65,10 +103,18 @@ public class FileDownloader {
                 conn.setRequestProperty("Cookie", cookieHeader);
             }
 
-            if (rangeHeader != null)
+            if (rangeHeader != null) {
                 conn.setRequestProperty("Range", rangeHeader);
+                if (ifRange != null)
+                    conn.setRequestProperty("If-Range", ifRange);
+            }
 
+            long start = System.nanoTime();
+            conn.connect();
+            long connected = System.nanoTime();
+            CONNECT_TIME.record(connected - start);
             int status = conn.getResponseCode();
+            FIRST_BYTE_TIME.recordSince(connected);
 
             if (status == 301 || status == 302 || status == 303 || status == 307 || status == 308) {
 
@@ -99,6 +145,8 @@ public class FileDownloader {
                 continue;
             }
 
+            if (redirects != null)
+                redirects[0] = redirectCount;
             return conn;
         }
 
@@ -116,7 +164,7 @@ public class FileDownloader {
             conn = safeOpenConnection(fileUrl, "HEAD", null);
 
             int responseCode = conn.getResponseCode();
-            System.out.println("Response code for HEAD request: " + responseCode);
+            logger.debug(() -> "HEAD " + fileUrl + " answered " + responseCode);
             if (isOk(responseCode)) {
                 String acceptRanges = conn.getHeaderField("Accept-Ranges");
                 if (acceptRanges != null && acceptRanges.equalsIgnoreCase("bytes")) {
@@ -124,7 +172,7 @@ public class FileDownloader {
                 }
             }
         } catch (Exception e) {
-            System.err.println("HEAD range probe failed: " + e.getMessage());
+            logger.debug(() -> "HEAD range probe failed: " + e.getMessage());
         } finally {
             if (conn != null)
                 conn.disconnect();
@@ -134,7 +182,7 @@ public class FileDownloader {
             conn = safeOpenConnection(fileUrl, "GET", "bytes=0-0");
 
             int responseCode = conn.getResponseCode();
-            System.out.println("Response code for GET range probe: " + responseCode);
+            logger.debug(() -> "GET range probe of " + fileUrl + " answered " + responseCode);
             if (isPartial(responseCode)) {
                 return true;
             }
@@ -143,7 +191,7 @@ public class FileDownloader {
             String contentRange = conn.getHeaderField("Content-Range");
             return (acceptRanges != null && acceptRanges.equalsIgnoreCase("bytes")) || (contentRange != null);
         } catch (Exception e) {
-            System.err.println("GET range probe failed: " + e.getMessage());
+            logger.warn("GET range probe failed: " + e.getMessage());
             return false;
         } finally {
             if (conn != null)
@@ -162,13 +210,14 @@ public class FileDownloader {
 
             int responseCode = conn.getResponseCode();
             if (isOk(responseCode)) {
+                captureValidators(conn);
                 long fileSize = conn.getContentLengthLong();
                 if (fileSize > 0) {
                     return fileSize;
                 }
             }
         } catch (Exception e) {
-            System.err.println("HEAD getFileSize failed: " + e.getMessage());
+            logger.debug(() -> "HEAD getFileSize failed: " + e.getMessage());
         } finally {
             if (conn != null) {
                 conn.disconnect();
@@ -179,6 +228,9 @@ public class FileDownloader {
             conn = safeOpenConnection(fileUrl, "GET", "bytes=0-0");
 
             int responseCode = conn.getResponseCode();
+            if (isOk(responseCode)) {
+                captureValidators(conn);
+            }
             if (isPartial(responseCode)) {
                 String contentRange = conn.getHeaderField("Content-Range"); // e.g.,
                                                                             // "bytes
@@ -198,7 +250,7 @@ public class FileDownloader {
                     return fileSize;
             }
         } catch (Exception e) {
-            System.err.println("GET range getFileSize failed: " + e.getMessage());
+            logger.warn("GET range getFileSize failed: " + e.getMessage());
         } finally {
             if (conn != null)
                 conn.disconnect();
@@ -206,4 +258,24 @@ public class FileDownloader {
 
         return -1;
     }
-}
\ No newline at end of file
+
+    private void captureValidators(HttpURLConnection conn) {
+        String tag = conn.getHeaderField("ETag");
+        // Weak validators are not allowed in If-Range
+        if (tag != null && !tag.startsWith("W/")) {
+            etag = tag;
+        }
+        String modified = conn.getHeaderField("Last-Modified");
+        if (modified != null) {
+            lastModified = modified;
+        }
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,147 @@
+package com.sunny.riftt.downloader;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming reader for a {@code multipart/byteranges} response body.
+ * Parts are handed out one at a time; the caller reads each body through
+ * {@link #read(byte[], int, int)} before asking for the next part, so nothing
+ * is buffered beyond the current header block.
+ */
+public class MultipartByteRanges {
+
+    public static final class Part {
+        public final long start;
+        public final long end;
+
+        Part(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long length() {
+            return end - start + 1;
+        }
+    }
+
+    private final InputStream in;
+    private final String delimiter;
+    private long bodyRemaining;
+    private boolean finished;
+
+    public MultipartByteRanges(InputStream in, String boundary) {
+        this.in = new BufferedInputStream(in, 8192);
+        this.delimiter = "--" + boundary;
+    }
+
+    /**
+     * Returns the boundary parameter of a multipart/byteranges content type,
+     * or null if the response is not a multipart/byteranges body.
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith("multipart/byteranges"))
+            return null;
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.toLowerCase().startsWith("boundary=")) {
+                String boundary = param.substring(9).trim();
+                if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                return boundary.isEmpty() ? null : boundary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Advances to the next part. Any unread body of the current part is skipped.
+     *
+     * @return the next part, or null once the closing delimiter is reached
+     */
+    public Part next() throws IOException {
+        if (finished)
+            return null;
+        while (bodyRemaining > 0) {
+            long skipped = in.skip(bodyRemaining);
+            if (skipped <= 0)
+                throw new IOException("Multipart body ended inside a part");
+            bodyRemaining -= skipped;
+        }
+
+        String line;
+        do {
+            line = readLine();
+            if (line == null)
+                throw new IOException("Multipart body ended before closing delimiter");
+        } while (!line.startsWith(delimiter));
+
+        if (line.startsWith(delimiter + "--")) {
+            finished = true;
+            return null;
+        }
+
+        Part part = null;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Range")) {
+                part = parseContentRange(line.substring(colon + 1).trim());
+            }
+        }
+        if (part == null)
+            throw new IOException("Multipart part without Content-Range");
+
+        bodyRemaining = part.length();
+        return part;
+    }
+
+    /**
+     * Reads from the body of the current part; returns -1 at the end of the part.
+     */
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        if (bodyRemaining <= 0)
+            return -1;
+        int n = in.read(buffer, off, (int) Math.min(len, bodyRemaining));
+        if (n == -1)
+            throw new IOException("Multipart body ended inside a part");
+        bodyRemaining -= n;
+        return n;
+    }
+
+    // "bytes 500-999/8000" or "bytes 500-999/*"
+    static Part parseContentRange(String value) throws IOException {
+        String v = value.toLowerCase();
+        if (!v.startsWith("bytes"))
+            throw new IOException("Unsupported Content-Range: " + value);
+        int dash = v.indexOf('-');
+        int slash = v.indexOf('/');
+        if (dash < 0)
+            throw new IOException("Malformed Content-Range: " + value);
+        try {
+            long start = Long.parseLong(v.substring(5, dash).trim());
+            long end = Long.parseLong(v.substring(dash + 1, slash < 0 ? v.length() : slash).trim());
+            if (end < start)
+                throw new IOException("Malformed Content-Range: " + value);
+            return new Part(start, end);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed Content-Range: " + value);
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(80);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n')
+                break;
+            if (b != '\r')
+                line.write(b);
+        }
+        if (b == -1 && line.size() == 0)
+            return null;
+        return line.toString("ISO-8859-1");
+    }
+}
@@ -0,0 +1,108 @@
+package com.sunny.riftt.downloader;
+
+import com.sunny.riftt.metrics.Histogram;
+import com.sunny.riftt.metrics.MetricsRegistry;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters the download tasks of one {@link DownloadManager} bump as they
+ * work: open connections, retries per host and transfer buffers. Every update
+ * is a single atomic operation, so keeping them costs the tasks next to
+ * nothing.
+ * <p>
+ * Database write latency is not timed here: progress writes only queue up in
+ * memory on the download threads and reach the database later in batches. It
+ * is read from the statement histogram the database layer records around
+ * every write it actually runs, a whole progress batch counting once.
+ */
+public final class TransferStats {
+
+    // The series the desktop DatabaseManager records into; the registry keeps one per name and labels
+    private static final Histogram DB_WRITE_TIME = MetricsRegistry.getDefault().histogram(
+            "riftt_db_statement_seconds", "Time a DAO call spends on its connection", "kind", "write");
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final Map<String, LongAdder> retriesByHost = new ConcurrentHashMap<>();
+    private final AtomicInteger buffersInUse = new AtomicInteger();
+
+    void connectionOpened() {
+        openConnections.incrementAndGet();
+        connectionsOpened.increment();
+    }
+
+    void connectionClosed() {
+        openConnections.decrementAndGet();
+    }
+
+    void retried(String host) {
+        retriesByHost.computeIfAbsent(host, h -> new LongAdder()).increment();
+    }
+
+    void bufferAcquired() {
+        buffersInUse.incrementAndGet();
+    }
+
+    void bufferReleased() {
+        buffersInUse.decrementAndGet();
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    /**
+     * Retry count per host, sorted by host name.
+     */
+    public Map<String, Long> getRetriesByHost() {
+        Map<String, Long> copy = new TreeMap<>();
+        retriesByHost.forEach((host, count) -> copy.put(host, count.sum()));
+        return copy;
+    }
+
+    /**
+     * Writes that reached the database, process wide.
+     */
+    public long getDbWrites() {
+        return DB_WRITE_TIME.getCount();
+    }
+
+    /**
+     * Mean duration of a database write in microseconds, or 0 before the first.
+     */
+    public double getMeanDbWriteMicros() {
+        long n = DB_WRITE_TIME.getCount();
+        return n == 0 ? 0 : DB_WRITE_TIME.getSumNanos() / 1000.0 / n;
+    }
+
+    public double getMaxDbWriteMicros() {
+        return DB_WRITE_TIME.getMaxNanos() / 1000.0;
+    }
+
+    public int getBuffersInUse() {
+        return buffersInUse.get();
+    }
+
+    public long getBufferBytesInUse() {
+        return (long) buffersInUse.get() * DownloadTask.BUFFER_SIZE;
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = new URL(url).getHost();
+            return host.isEmpty() ? "unknown" : host;
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.sunny.riftt.management;
+
+import com.sunny.riftt.model.DownloadSnapshot;
+
+import java.util.List;
+
+/**
+ * Downloads and worker pool of a running DownloadManager, plus the knobs an
+ * operator may turn while it runs.
+ */
+public interface DownloadManagerMXBean {
+
+    int getActiveDownloads();
+
+    /**
+     * Downloads added but not started yet.
+     */
+    int getQueuedDownloads();
+
+    int getPoolSize();
+
+    void setPoolSize(int size);
+
+    int getBusyThreads();
+
+    /**
+     * Busy threads as a fraction of the pool, between 0 and 1.
+     */
+    double getPoolUtilisation();
+
+    int getPoolQueueLength();
+
+    long getCompletedTasks();
+
+    /**
+     * Combined speed of all downloads in bytes per second.
+     */
+    double getTotalSpeed();
+
+    /**
+     * Progress and throughput of every running download.
+     */
+    List<DownloadSnapshot> getDownloads();
+
+    void pauseDownload(int id) throws Exception;
+
+    void resumeDownload(int id);
+
+    /**
+     * Pauses every running download and returns how many there were.
+     */
+    int pauseAll() throws Exception;
+}
@@ -0,0 +1,85 @@
+package com.sunny.riftt.management;
+
+import com.sunny.riftt.downloader.DownloadManager;
+import com.sunny.riftt.model.DownloadSnapshot;
+import com.sunny.riftt.model.DownloadStatus;
+
+import java.util.List;
+
+final class DownloadManagerMonitor implements DownloadManagerMXBean {
+
+    private final DownloadManager manager;
+
+    DownloadManagerMonitor(DownloadManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public int getActiveDownloads() {
+        return manager.getActiveCount();
+    }
+
+    @Override
+    public int getQueuedDownloads() {
+        return manager.countDownloads(DownloadStatus.PENDING);
+    }
+
+    @Override
+    public int getPoolSize() {
+        return manager.getPoolSize();
+    }
+
+    @Override
+    public void setPoolSize(int size) {
+        manager.setPoolSize(size);
+    }
+
+    @Override
+    public int getBusyThreads() {
+        return manager.getBusyThreads();
+    }
+
+    @Override
+    public double getPoolUtilisation() {
+        return (double) manager.getBusyThreads() / manager.getPoolSize();
+    }
+
+    @Override
+    public int getPoolQueueLength() {
+        return manager.getPoolQueueLength();
+    }
+
+    @Override
+    public long getCompletedTasks() {
+        return manager.getCompletedTaskCount();
+    }
+
+    @Override
+    public double getTotalSpeed() {
+        return manager.getTotalSpeed();
+    }
+
+    @Override
+    public List<DownloadSnapshot> getDownloads() {
+        return manager.getActiveSnapshots();
+    }
+
+    @Override
+    public void pauseDownload(int id) throws Exception {
+        manager.pauseDownload(id);
+    }
+
+    @Override
+    public void resumeDownload(int id) {
+        manager.resumeDownload(id);
+    }
+
+    @Override
+    public int pauseAll() throws Exception {
+        List<DownloadSnapshot> running = manager.getActiveSnapshots();
+        for (DownloadSnapshot d : running) {
+            manager.pauseDownload(d.getId());
+        }
+        return running.size();
+    }
+}
@@ -0,0 +1,80 @@
+package com.sunny.riftt.management;
+
+import com.sunny.riftt.core.ILogger;
+import com.sunny.riftt.downloader.DownloadManager;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the MBeans of one DownloadManager on the platform MBean server,
+ * under {@code com.sunny.riftt:type=...}. Registration never fails the
+ * manager: if JMX is unavailable or refuses a bean, the problem is logged and
+ * the manager runs without it. Set {@code -Driftt.jmx=false} to skip it.
+ */
+public final class ManagementRegistration {
+
+    public static final String DOMAIN = "com.sunny.riftt";
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final MBeanServer server;
+    private final List<ObjectName> names;
+    private final ILogger logger;
+
+    private ManagementRegistration(MBeanServer server, List<ObjectName> names, ILogger logger) {
+        this.server = server;
+        this.names = names;
+        this.logger = logger;
+    }
+
+    /**
+     * Registers the beans, or returns null when JMX is turned off or not
+     * usable here.
+     */
+    public static ManagementRegistration register(DownloadManager manager, ILogger logger) {
+        if ("false".equalsIgnoreCase(System.getProperty("riftt.jmx")))
+            return null;
+        MBeanServer server;
+        try {
+            server = ManagementFactory.getPlatformMBeanServer();
+        } catch (SecurityException | Error e) {
+            logger.error("JMX not available: " + e);
+            return null;
+        }
+        // Later managers in the same JVM get a suffix so their names do not clash
+        int instance = INSTANCES.getAndIncrement();
+        String suffix = instance == 0 ? "" : ",instance=" + instance;
+        List<ObjectName> names = new ArrayList<>();
+        register(server, names, new DownloadManagerMonitor(manager), "type=DownloadManager" + suffix, logger);
+        register(server, names,
+                new TransferEngineMonitor(manager.getTransferStats(), manager.getEventBus()),
+                "type=TransferEngine" + suffix, logger);
+        return names.isEmpty() ? null : new ManagementRegistration(server, names, logger);
+    }
+
+    private static void register(MBeanServer server, List<ObjectName> names, Object bean, String keys,
+            ILogger logger) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":" + keys);
+            server.registerMBean(bean, name);
+            names.add(name);
+        } catch (Exception e) {
+            logger.error("Could not register MBean " + keys + ": " + e.getMessage());
+        }
+    }
+
+    public void unregister() {
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (Exception e) {
+                logger.error("Could not unregister MBean " + name + ": " + e.getMessage());
+            }
+        }
+        names.clear();
+    }
+}
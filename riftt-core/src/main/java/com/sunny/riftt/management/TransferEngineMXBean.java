@@ -0,0 +1,34 @@
+package com.sunny.riftt.management;
+
+import java.util.Map;
+
+/**
+ * Internals of the transfer engine: connections, retries, database writes,
+ * transfer buffers and event delivery.
+ */
+public interface TransferEngineMXBean {
+
+    int getOpenConnections();
+
+    long getConnectionsOpened();
+
+    Map<String, Long> getRetriesByHost();
+
+    long getDbWrites();
+
+    double getMeanDbWriteMicros();
+
+    double getMaxDbWriteMicros();
+
+    int getBuffersInUse();
+
+    long getBufferBytesInUse();
+
+    long getEventsPublished();
+
+    long getEventsDropped();
+
+    long getEventsWaited();
+
+    int getEventQueueDepth();
+}
@@ -0,0 +1,77 @@
+package com.sunny.riftt.management;
+
+import com.sunny.riftt.downloader.DownloadEventBus;
+import com.sunny.riftt.downloader.TransferStats;
+
+import java.util.Map;
+
+final class TransferEngineMonitor implements TransferEngineMXBean {
+
+    private final TransferStats stats;
+    private final DownloadEventBus eventBus;
+
+    TransferEngineMonitor(TransferStats stats, DownloadEventBus eventBus) {
+        this.stats = stats;
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public int getOpenConnections() {
+        return stats.getOpenConnections();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return stats.getConnectionsOpened();
+    }
+
+    @Override
+    public Map<String, Long> getRetriesByHost() {
+        return stats.getRetriesByHost();
+    }
+
+    @Override
+    public long getDbWrites() {
+        return stats.getDbWrites();
+    }
+
+    @Override
+    public double getMeanDbWriteMicros() {
+        return stats.getMeanDbWriteMicros();
+    }
+
+    @Override
+    public double getMaxDbWriteMicros() {
+        return stats.getMaxDbWriteMicros();
+    }
+
+    @Override
+    public int getBuffersInUse() {
+        return stats.getBuffersInUse();
+    }
+
+    @Override
+    public long getBufferBytesInUse() {
+        return stats.getBufferBytesInUse();
+    }
+
+    @Override
+    public long getEventsPublished() {
+        return eventBus.getPublished();
+    }
+
+    @Override
+    public long getEventsDropped() {
+        return eventBus.getDropped();
+    }
+
+    @Override
+    public long getEventsWaited() {
+        return eventBus.getWaited();
+    }
+
+    @Override
+    public int getEventQueueDepth() {
+        return eventBus.getQueueDepth();
+    }
+}
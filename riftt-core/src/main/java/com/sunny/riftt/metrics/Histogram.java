@@ -0,0 +1,121 @@
+package com.sunny.riftt.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution with log-linear buckets in the style of HdrHistogram:
+ * every power of two is split into {@value #SUB_BUCKETS} equal buckets, so
+ * any recorded value is known to within 12.5% while the whole range from 1 ns
+ * to over two hours fits in a few hundred counters. Recording is a handful of
+ * atomic increments and never allocates.
+ * <p>
+ * Values are recorded in nanoseconds and exported in seconds.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Values from 2^MAX_EXPONENT ns (about 2.4 hours) up land in the last bucket
+    private static final int MAX_EXPONENT = 43;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram() {
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        buckets.incrementAndGet(indexOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+            // Another thread raised the max meanwhile; compare again
+        }
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, a value taken from
+     * {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100), or 0
+     * when nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.sum();
+        if (total == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target)
+                return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Cumulative counts for the given ascending bucket limits in nanoseconds,
+     * as Prometheus expects them. A fine bucket counts towards a limit once
+     * its whole range is at or below it.
+     */
+    long[] cumulativeCounts(long[] limits) {
+        long[] result = new long[limits.length];
+        long seen = 0;
+        int bucket = 0;
+        for (int l = 0; l < limits.length; l++) {
+            while (bucket < BUCKET_COUNT && upperBound(bucket) - 1 <= limits[l]) {
+                seen += buckets.get(bucket++);
+            }
+            result[l] = seen;
+        }
+        return result;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT)
+            return BUCKET_COUNT - 1;
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * First value past the bucket.
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index + 1;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + sub) * width + width;
+    }
+}
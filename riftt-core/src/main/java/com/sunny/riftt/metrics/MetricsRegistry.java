@@ -0,0 +1,187 @@
+package com.sunny.riftt.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Dependency-free home for counters, gauges and latency histograms, written
+ * out in the Prometheus text format. Look a metric up once and keep the
+ * handle; updating a handle costs a few atomic operations, while the lookup
+ * itself goes through a map.
+ * <p>
+ * Labels are given as name/value pairs, e.g.
+ * {@code counter("riftt_retries_total", "Retries", "host", host)}.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    // Bucket limits of exported histograms, in seconds
+    private static final String[] EXPORT_BUCKETS = { "0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005",
+            "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10", "30", "60", "300", "1800" };
+    private static final long[] EXPORT_LIMITS_NANOS = new long[EXPORT_BUCKETS.length];
+
+    static {
+        for (int i = 0; i < EXPORT_BUCKETS.length; i++) {
+            EXPORT_LIMITS_NANOS[i] = Math.round(Double.parseDouble(EXPORT_BUCKETS[i]) * 1e9);
+        }
+    }
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), HISTOGRAM("histogram");
+
+        final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        // Rendered label set -> Counter, Histogram or DoubleSupplier
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * The registry shared by the whole process.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).series.computeIfAbsent(renderLabels(labels),
+                k -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM).series.computeIfAbsent(renderLabels(labels),
+                k -> new Histogram());
+    }
+
+    /**
+     * Registers a value read at export time. Registering the same name and
+     * labels again replaces the earlier supplier.
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series.put(renderLabels(labels), value);
+    }
+
+    public void removeGauge(String name, String... labels) {
+        Family f = families.get(name);
+        if (f != null && f.type == Type.GAUGE)
+            f.series.remove(renderLabels(labels));
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family f = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (f.type != type)
+            throw new IllegalArgumentException("Metric " + name + " is already a " + f.type.text);
+        return f;
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format.
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        for (Family f : families.values()) {
+            sb.setLength(0);
+            sb.append("# HELP ").append(f.name).append(' ').append(escapeHelp(f.help)).append('\n');
+            sb.append("# TYPE ").append(f.name).append(' ').append(f.type.text).append('\n');
+            for (Map.Entry<String, Object> e : f.series.entrySet()) {
+                String labels = e.getKey();
+                Object metric = e.getValue();
+                switch (f.type) {
+                    case COUNTER:
+                        sample(sb, f.name, labels, ((Counter) metric).get());
+                        break;
+                    case GAUGE:
+                        double value;
+                        try {
+                            value = ((DoubleSupplier) metric).getAsDouble();
+                        } catch (RuntimeException ex) {
+                            continue; // A broken gauge must not take the export down
+                        }
+                        sample(sb, f.name, labels, value);
+                        break;
+                    case HISTOGRAM:
+                        writeHistogram(sb, f.name, labels, (Histogram) metric);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            out.write(sb.toString());
+        }
+    }
+
+    private static void writeHistogram(StringBuilder sb, String name, String labels, Histogram h) {
+        // Read the count first so that +Inf is never below a finite bucket
+        long count = h.getCount();
+        long[] cumulative = h.cumulativeCounts(EXPORT_LIMITS_NANOS);
+        for (int i = 0; i < EXPORT_BUCKETS.length; i++) {
+            sample(sb, name + "_bucket", withLabel(labels, "le", EXPORT_BUCKETS[i]),
+                    Math.min(cumulative[i], count));
+        }
+        sample(sb, name + "_bucket", withLabel(labels, "le", "+Inf"), count);
+        sample(sb, name + "_sum", labels, h.getSumNanos() / 1e9);
+        sample(sb, name + "_count", labels, count);
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, long value) {
+        sb.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name).append(labels).append(' ');
+        if (Double.isNaN(value))
+            sb.append("NaN");
+        else if (Double.isInfinite(value))
+            sb.append(value > 0 ? "+Inf" : "-Inf");
+        else
+            sb.append(value);
+        sb.append('\n');
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String pair = name + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + pair + "}" : labels.substring(0, labels.length() - 1) + "," + pair + "}";
+    }
+
+    static String renderLabels(String[] labels) {
+        if (labels.length == 0)
+            return "";
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must come in name/value pairs");
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0)
+                sb.append(',');
+            sb.append(labels[i]).append("=\"").append(escapeLabel(labels[i + 1])).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,78 @@
+package com.sunny.riftt.metrics;
+
+import com.sunny.riftt.core.ILogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes a registry to a text file in the Prometheus format,
+ * for node_exporter's textfile collector or anything else that scrapes
+ * files. The file is replaced atomically, so a reader never sees half of it.
+ */
+public final class PrometheusFileExporter {
+
+    private final MetricsRegistry registry;
+    private final Path target;
+    private final long intervalMs;
+    private final ILogger logger;
+    private ScheduledExecutorService scheduler;
+
+    public PrometheusFileExporter(MetricsRegistry registry, File target, long intervalMs, ILogger logger) {
+        this.registry = registry;
+        this.target = target.toPath();
+        this.intervalMs = intervalMs;
+        this.logger = logger;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null)
+            return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "riftt-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::exportQuietly, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the schedule and writes the final values.
+     */
+    public synchronized void stop() {
+        if (scheduler == null)
+            return;
+        scheduler.shutdownNow();
+        scheduler = null;
+        exportQuietly();
+    }
+
+    public void export() throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            registry.writePrometheus(out);
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void exportQuietly() {
+        try {
+            export();
+        } catch (IOException e) {
+            logger.error("Metrics export to " + target + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.sunny.riftt.model;
+
+/**
+ * Point-in-time state of one chunk: its byte range, how far it got, how fast
+ * it is moving and what it is doing.
+ */
+public class ChunkSnapshot {
+    private final int id;
+    private final long startByte;
+    private final long endByte;
+    private final long offset;
+    private final double bytesPerSecond;
+    private final ChunkStatus status;
+
+    public ChunkSnapshot(int id, long startByte, long endByte, long offset, double bytesPerSecond,
+            ChunkStatus status) {
+        this.id = id;
+        this.startByte = startByte;
+        this.endByte = endByte;
+        this.offset = offset;
+        this.bytesPerSecond = bytesPerSecond;
+        this.status = status;
+    }
+
+    public static ChunkSnapshot of(DownloadChunk chunk) {
+        return new ChunkSnapshot(chunk.getId(), chunk.getStartByte(), chunk.getEndByte(), chunk.getCurrentOffset(), 0,
+                ChunkStatus.fromName(chunk.getStatus()));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getStartByte() {
+        return startByte;
+    }
+
+    /**
+     * Last byte of the chunk, or -1 when the file size is unknown.
+     */
+    public long getEndByte() {
+        return endByte;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public ChunkStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Percentage done, or -1 when the chunk has no known end.
+     */
+    public double getPercent() {
+        if (endByte < startByte)
+            return -1;
+        long total = endByte - startByte + 1;
+        return Math.min(100, Math.max(0, offset - startByte) * 100.0 / total);
+    }
+}
@@ -0,0 +1,41 @@
+package com.sunny.riftt.model;
+
+/**
+ * Chunk states with stable numeric codes for compact on-disk formats. The
+ * database and the rest of the code still pass these around by name.
+ */
+public enum ChunkStatus {
+    PENDING(0),
+    DOWNLOADING(1),
+    PAUSED(2),
+    COMPLETED(3),
+    FAILED(4);
+
+    private final int code;
+
+    ChunkStatus(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static ChunkStatus fromCode(int code) {
+        for (ChunkStatus status : values()) {
+            if (status.code == code)
+                return status;
+        }
+        return PENDING;
+    }
+
+    public static ChunkStatus fromName(String name) {
+        if (name != null) {
+            for (ChunkStatus status : values()) {
+                if (status.name().equals(name))
+                    return status;
+            }
+        }
+        return PENDING;
+    }
+}
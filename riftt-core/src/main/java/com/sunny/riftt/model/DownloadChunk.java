@@ -5,7 +5,7 @@ public class DownloadChunk {
     private int downloadId;
     private long startByte;
     private long endByte;
-    private long currentOffset;
+    private volatile long currentOffset; // read by checkpoint writers while a task advances it
     private String status; // PENDING, DOWNLOADING, COMPLETED
 
     public DownloadChunk() {
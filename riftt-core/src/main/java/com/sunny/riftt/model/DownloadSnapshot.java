@@ -0,0 +1,57 @@
+package com.sunny.riftt.model;
+
+/**
+ * Point-in-time progress of a running download, read from memory rather than
+ * the database. Speeds are in bytes per second.
+ */
+public class DownloadSnapshot {
+    private final int id;
+    private final long downloadedSize;
+    private final long fileSize;
+    private final double speed;
+    private final double averageSpeed;
+    private final long etaSeconds;
+
+    public DownloadSnapshot(int id, long downloadedSize, long fileSize, double speed, double averageSpeed,
+            long etaSeconds) {
+        this.id = id;
+        this.downloadedSize = downloadedSize;
+        this.fileSize = fileSize;
+        this.speed = speed;
+        this.averageSpeed = averageSpeed;
+        this.etaSeconds = etaSeconds;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getDownloadedSize() {
+        return downloadedSize;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Smoothed current speed.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Speed since this run of the download started.
+     */
+    public double getAverageSpeed() {
+        return averageSpeed;
+    }
+
+    /**
+     * Seconds left at the current speed, or -1 when unknown.
+     */
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+}
@@ -1,10 +1,29 @@
 package com.sunny.riftt.model;
 
 public enum DownloadStatus {
-    DOWNLOADING,
-    PAUSED,
-    COMPLETED,
-    FAILED,
-    PENDING,
-    CANCELED
+    DOWNLOADING(1),
+    PAUSED(2),
+    COMPLETED(3),
+    FAILED(4),
+    PENDING(0),
+    CANCELED(5);
+
+    // Stored in the database instead of the name; never renumber
+    private final int code;
+
+    DownloadStatus(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static DownloadStatus fromCode(int code) {
+        for (DownloadStatus status : values()) {
+            if (status.code == code)
+                return status;
+        }
+        return PENDING;
+    }
 }
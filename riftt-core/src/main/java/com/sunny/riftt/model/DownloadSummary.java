@@ -0,0 +1,46 @@
+package com.sunny.riftt.model;
+
+/**
+ * The handful of columns the download list shows, loaded without the rest of
+ * the row.
+ */
+public class DownloadSummary {
+    private final int id;
+    private final String filename;
+    private final DownloadStatus status;
+    private final long fileSize;
+    private final long downloadedSize;
+
+    public DownloadSummary(int id, String filename, DownloadStatus status, long fileSize, long downloadedSize) {
+        this.id = id;
+        this.filename = filename;
+        this.status = status;
+        this.fileSize = fileSize;
+        this.downloadedSize = downloadedSize;
+    }
+
+    public static DownloadSummary of(Download download) {
+        return new DownloadSummary(download.getId(), download.getFilename(), download.getStatus(),
+                download.getFileSize(), download.getDownloadedSize());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public DownloadStatus getStatus() {
+        return status;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getDownloadedSize() {
+        return downloadedSize;
+    }
+}
@@ -0,0 +1,130 @@
+package com.sunny.riftt.storage;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks which fixed-size blocks of a download are known to be on disk.
+ * A bit is only set once every byte of its block has been written and forced,
+ * so on resume the bitmap (not the periodically saved chunk offset) decides
+ * what still needs to be fetched.
+ */
+public class BlockBitmap {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final long fileSize;
+    private final int blockSize;
+    private final int blockCount;
+    private final AtomicLongArray words;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    public BlockBitmap(long fileSize, int blockSize) {
+        if (fileSize <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("Bitmap requires a known file size");
+        }
+        this.fileSize = fileSize;
+        this.blockSize = blockSize;
+        this.blockCount = (int) ((fileSize + blockSize - 1) / blockSize);
+        this.words = new AtomicLongArray((blockCount + 63) >>> 6);
+    }
+
+    public static BlockBitmap fromBytes(long fileSize, int blockSize, byte[] data) {
+        BlockBitmap bitmap = new BlockBitmap(fileSize, blockSize);
+        int limit = Math.min(data.length, (bitmap.blockCount + 7) >>> 3);
+        for (int i = 0; i < limit; i++) {
+            int b = data[i] & 0xFF;
+            for (int bit = 0; bit < 8 && b != 0; bit++, b >>>= 1) {
+                if ((b & 1) != 0) {
+                    int block = (i << 3) + bit;
+                    if (block < bitmap.blockCount) {
+                        bitmap.set(block);
+                    }
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Marks every block that lies entirely inside [from, to) as durable.
+     * The caller must have forced the data for that range before calling.
+     *
+     * @return the end offset of the last block marked, or {@code from} if the
+     *         range did not cover a whole block. Callers pass this back as the
+     *         next {@code from}.
+     */
+    public long markDurable(long from, long to) {
+        int first = (int) ((from + blockSize - 1) / blockSize);
+        int last = (to >= fileSize) ? blockCount : (int) (to / blockSize);
+        if (last <= first) {
+            return from;
+        }
+        for (int block = first; block < last; block++) {
+            set(block);
+        }
+        dirty.set(true);
+        return Math.min((long) last * blockSize, fileSize);
+    }
+
+    public boolean isSet(int block) {
+        return (words.get(block >>> 6) & (1L << (block & 63))) != 0;
+    }
+
+    /**
+     * Returns the offset from which the byte range [start, end] must be
+     * re-fetched, i.e. the start of the first block in it that is not durable,
+     * or {@code end + 1} if the whole range is on disk.
+     */
+    public long firstMissingOffset(long start, long end) {
+        int first = (int) (start / blockSize);
+        int last = (int) Math.min(blockCount - 1, end / blockSize);
+        for (int block = first; block <= last; block++) {
+            if (!isSet(block)) {
+                return Math.max(start, (long) block * blockSize);
+            }
+        }
+        return end + 1;
+    }
+
+    /**
+     * Returns true and clears the flag if blocks were marked since the last call.
+     */
+    public boolean takeDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    public byte[] toByteArray() {
+        byte[] out = new byte[(blockCount + 7) >>> 3];
+        for (int block = 0; block < blockCount; block++) {
+            if (isSet(block)) {
+                out[block >>> 3] |= (byte) (1 << (block & 7));
+            }
+        }
+        return out;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    private void set(int block) {
+        int index = block >>> 6;
+        long mask = 1L << (block & 63);
+        long current;
+        do {
+            current = words.get(index);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(index, current, current | mask));
+    }
+}
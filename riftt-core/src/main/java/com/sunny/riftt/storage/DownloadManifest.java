@@ -0,0 +1,241 @@
+package com.sunny.riftt.storage;
+
+import com.sunny.riftt.model.DownloadChunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Small binary sidecar written next to {@code <name>.part} while a download is
+ * in progress. It holds everything needed to resume without the database:
+ * URL, server validators, chunk layout with offsets and the block bitmap. It
+ * also records the id of the download that wrote it, so a leftover manifest
+ * at the same path is never adopted by a different download.
+ */
+public class DownloadManifest {
+
+    private static final int MAGIC = 0x52494654; // "RIFT"
+    private static final short VERSION = 2;
+
+    public static final String PART_SUFFIX = ".part";
+    public static final String MANIFEST_SUFFIX = ".part.meta";
+
+    private final int downloadId;
+    private final String downloadPath;
+    private final String url;
+    private final String etag;
+    private final String lastModified;
+    private final long fileSize;
+    private final List<DownloadChunk> chunks;
+    private int blockSize;
+    private byte[] bitmap;
+
+    public DownloadManifest(int downloadId, String downloadPath, String url, String etag, String lastModified,
+            long fileSize, List<DownloadChunk> chunks) {
+        this.downloadId = downloadId;
+        this.downloadPath = downloadPath;
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.fileSize = fileSize;
+        this.chunks = chunks;
+    }
+
+    public static String partPath(String downloadPath) {
+        return downloadPath + PART_SUFFIX;
+    }
+
+    public static String manifestPath(String downloadPath) {
+        return downloadPath + MANIFEST_SUFFIX;
+    }
+
+    /**
+     * Value for an {@code If-Range} header, so that a range request against a
+     * file that changed on the server returns the full body instead of a
+     * mismatched slice.
+     */
+    public String getIfRange() {
+        return etag != null ? etag : lastModified;
+    }
+
+    public void setBitmap(BlockBitmap bitmap) {
+        this.blockSize = bitmap.getBlockSize();
+        this.bitmap = bitmap.toByteArray();
+    }
+
+    /**
+     * Writes the manifest to a temp file and renames it over the previous one,
+     * so a crash mid-write leaves the old manifest intact.
+     */
+    public void write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + chunks.size() * 40);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(downloadId);
+        out.writeUTF(url);
+        writeNullable(out, etag);
+        writeNullable(out, lastModified);
+        out.writeLong(fileSize);
+        out.writeInt(blockSize);
+        if (bitmap == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(bitmap.length);
+            out.write(bitmap);
+        }
+        out.writeInt(chunks.size());
+        for (DownloadChunk c : chunks) {
+            out.writeInt(c.getId());
+            out.writeLong(c.getStartByte());
+            out.writeLong(c.getEndByte());
+            out.writeLong(c.getCurrentOffset());
+            out.writeUTF(c.getStatus() == null ? "PENDING" : c.getStatus());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        File target = new File(manifestPath(downloadPath));
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            bytes.writeTo(fos);
+            fos.getFD().sync();
+        }
+        moveAtomically(tmp.toPath(), target.toPath());
+    }
+
+    /**
+     * Reads the manifest for {@code downloadPath}, or returns null if it is
+     * missing, truncated, fails its checksum, cannot be decoded or was written
+     * by another download than {@code downloadId}.
+     */
+    public static DownloadManifest read(String downloadPath, int downloadId) {
+        File file = new File(manifestPath(downloadPath));
+        if (!file.isFile())
+            return null;
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            if (data.length < 8)
+                return null;
+            // Check the trailing checksum before trusting any length in the body
+            int bodyLength = data.length - 8;
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, bodyLength);
+            if (ByteBuffer.wrap(data, bodyLength, 8).getLong() != crc.getValue())
+                return null;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, bodyLength));
+            if (in.readInt() != MAGIC || in.readShort() != VERSION)
+                return null;
+            if (in.readInt() != downloadId)
+                return null;
+
+            String url = in.readUTF();
+            String etag = readNullable(in);
+            String lastModified = readNullable(in);
+            long fileSize = in.readLong();
+            int blockSize = in.readInt();
+            int bitmapLength = in.readInt();
+            if (bitmapLength < 0 || bitmapLength > in.available())
+                return null;
+            byte[] bitmap = new byte[bitmapLength];
+            in.readFully(bitmap);
+            int count = in.readInt();
+            if (count < 0 || count > in.available())
+                return null;
+            List<DownloadChunk> chunks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                DownloadChunk c = new DownloadChunk();
+                c.setId(in.readInt());
+                c.setDownloadId(downloadId);
+                c.setStartByte(in.readLong());
+                c.setEndByte(in.readLong());
+                c.setCurrentOffset(in.readLong());
+                c.setStatus(in.readUTF());
+                chunks.add(c);
+            }
+
+            DownloadManifest manifest = new DownloadManifest(downloadId, downloadPath, url, etag, lastModified, fileSize, chunks);
+            if (bitmap.length > 0) {
+                manifest.blockSize = blockSize;
+                manifest.bitmap = bitmap;
+            }
+            return manifest;
+        } catch (IOException | RuntimeException e) {
+            // Unreadable in any way means no manifest; the chunk table is used instead
+            return null;
+        }
+    }
+
+    public static void delete(String downloadPath) {
+        new File(manifestPath(downloadPath)).delete();
+        new File(manifestPath(downloadPath) + ".tmp").delete();
+    }
+
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    public int getDownloadId() {
+        return downloadId;
+    }
+
+    public String getDownloadPath() {
+        return downloadPath;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public List<DownloadChunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Returns the stored bitmap if it was written with {@code expectedBlockSize}.
+     */
+    public byte[] getBitmap(int expectedBlockSize) {
+        return (bitmap != null && blockSize == expectedBlockSize) ? bitmap : null;
+    }
+}
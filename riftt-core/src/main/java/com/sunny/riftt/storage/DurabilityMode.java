@@ -0,0 +1,13 @@
+package com.sunny.riftt.storage;
+
+/**
+ * How hard a download works to make its checkpoints survive a power loss.
+ */
+public enum DurabilityMode {
+    /** Never fsync; checkpoints may claim bytes that only reached the page cache. */
+    NONE,
+    /** Fsync at most once per interval, shared by all chunks of a download. */
+    PERIODIC,
+    /** Fsync before every checkpoint, batched across concurrent chunks. */
+    STRICT
+}
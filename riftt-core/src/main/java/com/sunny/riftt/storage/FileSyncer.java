@@ -0,0 +1,122 @@
+package com.sunny.riftt.storage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit fsync for one download. Every task writes to its own handle on
+ * the same file, and forcing any handle flushes the whole file, so concurrent
+ * sync requests are folded into a single {@code force()} done by whichever
+ * caller gets there first.
+ */
+public class FileSyncer {
+
+    private final DurabilityMode mode;
+    private final long intervalNanos;
+    private final Object lock = new Object();
+
+    private long requested; // tickets handed out
+    private long completed; // highest ticket covered by a finished force
+    private boolean syncing;
+    private volatile long lastSyncNanos = System.nanoTime();
+
+    public FileSyncer(DurabilityMode mode, long intervalMillis) {
+        this.mode = mode;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Called when a task wants to record a checkpoint. Returns true when the
+     * data the caller has written so far may be recorded as on disk: always in
+     * {@link DurabilityMode#NONE}, after a group fsync in
+     * {@link DurabilityMode#STRICT}, and in {@link DurabilityMode#PERIODIC} only
+     * once the interval has elapsed, in which case this call does the fsync.
+     * A caller that gets false can take a {@link #ticket()} and record its
+     * current position as soon as {@link #isCovered} says another caller's
+     * fsync took care of it.
+     */
+    public boolean checkpoint(FileChannel channel) throws IOException {
+        switch (mode) {
+            case NONE:
+                return true;
+            case PERIODIC:
+                if (System.nanoTime() - lastSyncNanos < intervalNanos)
+                    return false;
+                sync(channel);
+                return true;
+            default:
+                sync(channel);
+                return true;
+        }
+    }
+
+    /**
+     * Returns a ticket standing for everything the caller has written so far.
+     */
+    public long ticket() {
+        synchronized (lock) {
+            return ++requested;
+        }
+    }
+
+    /**
+     * Whether a finished fsync began after the ticket was taken, so the writes
+     * it stands for are on disk.
+     */
+    public boolean isCovered(long ticket) {
+        synchronized (lock) {
+            return completed >= ticket;
+        }
+    }
+
+    /**
+     * Blocks until everything written before this call has been forced to
+     * disk. No-op in {@link DurabilityMode#NONE}.
+     */
+    public void sync(FileChannel channel) throws IOException {
+        if (mode == DurabilityMode.NONE)
+            return;
+
+        long ticket;
+        synchronized (lock) {
+            ticket = ++requested;
+        }
+        long covers;
+        synchronized (lock) {
+            try {
+                while (syncing && completed < ticket) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for fsync");
+            }
+            if (completed >= ticket)
+                return;
+            // Become the leader: one force covers every ticket issued so far
+            syncing = true;
+            covers = requested;
+        }
+
+        boolean ok = false;
+        try {
+            channel.force(false);
+            ok = true;
+        } finally {
+            synchronized (lock) {
+                syncing = false;
+                if (ok) {
+                    completed = Math.max(completed, covers);
+                    lastSyncNanos = System.nanoTime();
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    public DurabilityMode getMode() {
+        return mode;
+    }
+}
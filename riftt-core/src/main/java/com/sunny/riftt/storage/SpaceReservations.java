@@ -0,0 +1,132 @@
+package com.sunny.riftt.storage;
+
+import com.sunny.riftt.exceptions.InsufficientSpaceException;
+import com.sunny.riftt.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the bytes every active download still has to write, per
+ * volume, so that a new download is refused up front instead of hitting
+ * ENOSPC half way through while other downloads share the same disk.
+ * Reservations shrink as downloads {@link #consume} them: written bytes
+ * already show up in the free space and must not be counted twice.
+ */
+public class SpaceReservations {
+
+    private static final long PROBE_BYTES = 16L * 1024 * 1024;
+
+    private static final class Reservation {
+        final FileStore volume;
+        long bytes;
+
+        Reservation(FileStore volume, long bytes) {
+            this.volume = volume;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Map<Integer, Reservation> reservations = new HashMap<>();
+    private final Map<FileStore, Long> reservedPerVolume = new HashMap<>();
+    private final Map<FileStore, Boolean> allocatesOnExtend = new HashMap<>();
+
+    /**
+     * Reserves {@code bytes} on the volume holding {@code filePath}. Any previous
+     * reservation for the same download is replaced.
+     *
+     * @throws InsufficientSpaceException if the free space on the volume does not
+     *                                    cover this and every other reservation on it
+     */
+    public synchronized void reserve(int downloadId, String filePath, long bytes)
+            throws InsufficientSpaceException, IOException {
+        release(downloadId);
+        if (bytes <= 0)
+            return;
+
+        File dir = new File(filePath).getAbsoluteFile().getParentFile();
+        FileUtils.createDirectoryIfNotExists(dir.getPath());
+        FileStore volume = Files.getFileStore(dir.toPath());
+
+        long available = FileUtils.getAvailableSpace(dir.getPath()) * 1024L;
+        long alreadyReserved = reservedPerVolume.getOrDefault(volume, 0L);
+        if (available < alreadyReserved + bytes) {
+            throw new InsufficientSpaceException("need " + bytes + " bytes on " + volume.name() + ", "
+                    + available + " free and " + alreadyReserved + " reserved by other downloads");
+        }
+
+        reservations.put(downloadId, new Reservation(volume, bytes));
+        reservedPerVolume.merge(volume, bytes, Long::sum);
+    }
+
+    /**
+     * Shrinks the reservation of a download by bytes that have now landed on
+     * disk. Never goes below zero.
+     */
+    public synchronized void consume(int downloadId, long bytes) {
+        Reservation r = reservations.get(downloadId);
+        if (r == null || bytes <= 0)
+            return;
+        long used = Math.min(bytes, r.bytes);
+        r.bytes -= used;
+        unreserve(r.volume, used);
+    }
+
+    /**
+     * Whether growing a file with {@link RandomAccessFile#setLength} takes its
+     * space on the volume holding {@code filePath} right away, i.e. the
+     * filesystem does not create sparse files. Probed once per volume with a
+     * temporary file.
+     */
+    public synchronized boolean allocatesOnExtend(String filePath) throws IOException {
+        File dir = new File(filePath).getAbsoluteFile().getParentFile();
+        FileUtils.createDirectoryIfNotExists(dir.getPath());
+        FileStore volume = Files.getFileStore(dir.toPath());
+        Boolean known = allocatesOnExtend.get(volume);
+        if (known == null) {
+            known = probe(dir);
+            allocatesOnExtend.put(volume, known);
+        }
+        return known;
+    }
+
+    private static boolean probe(File dir) throws IOException {
+        File tmp = File.createTempFile(".riftt-probe", null, dir);
+        try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+            long before = FileUtils.getAvailableSpace(dir.getPath()) * 1024L;
+            file.setLength(PROBE_BYTES);
+            long after = FileUtils.getAvailableSpace(dir.getPath()) * 1024L;
+            return before - after >= PROBE_BYTES / 2;
+        } catch (IOException e) {
+            // Could not even grow a small file; treat the space as taken
+            return true;
+        } finally {
+            if (!tmp.delete())
+                tmp.deleteOnExit();
+        }
+    }
+
+    public synchronized void release(int downloadId) {
+        Reservation r = reservations.remove(downloadId);
+        if (r != null)
+            unreserve(r.volume, r.bytes);
+    }
+
+    private void unreserve(FileStore volume, long bytes) {
+        long left = reservedPerVolume.getOrDefault(volume, 0L) - bytes;
+        if (left > 0) {
+            reservedPerVolume.put(volume, left);
+        } else {
+            reservedPerVolume.remove(volume);
+        }
+    }
+
+    public synchronized long getReservedBytes(FileStore volume) {
+        return reservedPerVolume.getOrDefault(volume, 0L);
+    }
+}
@@ -0,0 +1,166 @@
+package com.sunny.riftt.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash map from primitive int keys to objects, using open addressing with
+ * linear probing. Keys are never boxed and an entry costs one int and one
+ * reference, so tracking many ids stays cheap. Removal shifts later entries
+ * back instead of leaving tombstones, and the table shrinks again once most
+ * entries are gone.
+ * <p>
+ * Not thread-safe; callers synchronize. Null values are not allowed.
+ */
+public class IntObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public IntObjectMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Maps the key to the value and returns the previous value, if any.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("Null values are not supported");
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V old = (V) values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // Keep the load at or below one half so probe runs stay short
+        if (++size * 2 > keys.length)
+            resize(keys.length * 2);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = find(key);
+        if (slot < 0)
+            return null;
+        V old = (V) values[slot];
+        removeAt(slot);
+        return old;
+    }
+
+    /**
+     * Removes the entry only while the key still maps to this exact value.
+     */
+    public boolean remove(int key, V value) {
+        int slot = find(key);
+        if (slot < 0 || values[slot] != value)
+            return false;
+        removeAt(slot);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies the values into a new list, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        for (Object v : values) {
+            if (v != null)
+                list.add((V) v);
+        }
+        return list;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    private int find(int key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeAt(int slot) {
+        // Backward-shift: move later entries of the probe run into the gap so
+        // lookups never have to step over deleted slots
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(keys[next]) & mask;
+            // Move the entry unless its home lies cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+        size--;
+        if (keys.length > MIN_CAPACITY && size * 8 < keys.length)
+            resize(keys.length / 2);
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (values[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    // Sequential ids would otherwise fill one dense run of slots
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
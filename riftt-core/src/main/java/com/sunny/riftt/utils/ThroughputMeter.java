@@ -0,0 +1,121 @@
+package com.sunny.riftt.utils;
+
+/**
+ * Transfer speed of a growing byte count. Feed it the running total at
+ * regular intervals; it keeps an exponentially weighted moving average plus a
+ * fixed ring of recent samples, so memory is constant and sampling never
+ * allocates.
+ * <p>
+ * {@link #sample} must be called from one thread at a time; the getters may be
+ * called from any thread.
+ */
+public final class ThroughputMeter {
+
+    public static final int DEFAULT_WINDOW = 20;
+    public static final long DEFAULT_TIME_CONSTANT_MS = 2000L;
+
+    private final long[] bytes;
+    private final long[] nanos;
+    private final double timeConstantNanos;
+    // Only touched by the sampling thread
+    private int head;
+    private int count;
+    private long startBytes;
+    private long startNanos;
+
+    private volatile double speed;
+    private volatile double windowSpeed;
+    private volatile double averageSpeed;
+
+    public ThroughputMeter() {
+        this(DEFAULT_WINDOW, DEFAULT_TIME_CONSTANT_MS);
+    }
+
+    /**
+     * @param window         samples kept for the rolling speed
+     * @param timeConstantMs how quickly the moving average follows changes
+     */
+    public ThroughputMeter(int window, long timeConstantMs) {
+        if (window < 2)
+            throw new IllegalArgumentException("window must be at least 2");
+        this.bytes = new long[window];
+        this.nanos = new long[window];
+        this.timeConstantNanos = timeConstantMs * 1e6;
+    }
+
+    /**
+     * Records the running total at the given time. The first sample is the
+     * baseline; a total that goes down resets the meter.
+     */
+    public void sample(long totalBytes, long nowNanos) {
+        if (count == 0 || totalBytes < bytes[head]) {
+            reset(totalBytes, nowNanos);
+            return;
+        }
+        long dt = nowNanos - nanos[head];
+        if (dt <= 0)
+            return;
+        double instant = (totalBytes - bytes[head]) * 1e9 / dt;
+        // Larger gaps between samples weigh more, so the average does not depend on the interval
+        double alpha = 1 - Math.exp(-dt / timeConstantNanos);
+        speed = count == 1 ? instant : speed + alpha * (instant - speed);
+
+        head = (head + 1) % bytes.length;
+        bytes[head] = totalBytes;
+        nanos[head] = nowNanos;
+        if (count < bytes.length)
+            count++;
+
+        int oldest = (head - count + 1 + bytes.length) % bytes.length;
+        windowSpeed = (totalBytes - bytes[oldest]) * 1e9 / (nowNanos - nanos[oldest]);
+        averageSpeed = (totalBytes - startBytes) * 1e9 / (nowNanos - startNanos);
+    }
+
+    /**
+     * Zeroes the speeds and starts over from the given total, for example once
+     * the transfer has stopped.
+     */
+    public void reset(long totalBytes, long nowNanos) {
+        head = 0;
+        count = 1;
+        bytes[0] = totalBytes;
+        nanos[0] = nowNanos;
+        startBytes = totalBytes;
+        startNanos = nowNanos;
+        speed = 0;
+        windowSpeed = 0;
+        averageSpeed = 0;
+    }
+
+    /**
+     * Smoothed current speed in bytes per second.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Speed over the samples in the ring, in bytes per second.
+     */
+    public double getWindowSpeed() {
+        return windowSpeed;
+    }
+
+    /**
+     * Speed since the first sample, in bytes per second.
+     */
+    public double getAverageSpeed() {
+        return averageSpeed;
+    }
+
+    /**
+     * Seconds until {@code remainingBytes} are done at the smoothed speed, or
+     * -1 when that cannot be estimated.
+     */
+    public long getEtaSeconds(long remainingBytes) {
+        double s = speed;
+        if (remainingBytes < 0 || s <= 0)
+            return -1;
+        return (long) Math.ceil(remainingBytes / s);
+    }
+}
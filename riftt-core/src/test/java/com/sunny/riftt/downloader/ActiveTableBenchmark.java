@@ -0,0 +1,167 @@
+package com.sunny.riftt.downloader;
+
+import com.sunny.riftt.storage.BlockBitmap;
+import com.sunny.riftt.storage.DownloadManifest;
+import com.sunny.riftt.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the heap the manager spends on keeping track of running downloads,
+ * comparing the old layout (six maps keyed by boxed ids: futures, tasks,
+ * pausing futures, progress, bitmaps and manifests) with one
+ * {@link ActiveDownload} record per download in an {@link IntObjectMap}, and
+ * with the same records in a {@link HashMap}. The manifests, bitmaps and
+ * counters the tables point to are built once up front and shared, so only
+ * the tables, their keys and the records are counted. The records also carry
+ * state the old maps did not (speed meter, start time), so the tables are
+ * measured once more over records built up front.
+ * <p>
+ * Lives with the test sources so it stays out of the jar. After
+ * {@code mvn test-compile} in riftt-core:
+ * {@code java -cp target/classes:target/test-classes com.sunny.riftt.downloader.ActiveTableBenchmark [downloads] [rounds]}
+ */
+public final class ActiveTableBenchmark {
+
+    private static final long FILE_SIZE = 64L * 1024 * 1024;
+
+    // Keeps what is being measured reachable across the heap samples
+    private static Object retained;
+
+    public static void main(String[] args) throws Exception {
+        int downloads = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        LongAdder sessionTotal = new LongAdder();
+        DownloadManifest[] manifests = new DownloadManifest[downloads];
+        BlockBitmap[] bitmaps = new BlockBitmap[downloads];
+        DownloadProgress[] progress = new DownloadProgress[downloads];
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        List<DownloadTask> tasks = Collections.emptyList();
+        for (int i = 0; i < downloads; i++) {
+            manifests[i] = new DownloadManifest(i, "bench-" + i + ".bin", "http://localhost/bench/" + i, null, null,
+                    FILE_SIZE, Collections.emptyList());
+            bitmaps[i] = new BlockBitmap(FILE_SIZE, BlockBitmap.DEFAULT_BLOCK_SIZE);
+            progress[i] = new DownloadProgress(0, FILE_SIZE, sessionTotal);
+        }
+
+        System.out.println(String.format("%-14s %9s %12s %14s", "layout", "downloads", "heap KB", "bytes/download"));
+        long oldBytes = Long.MAX_VALUE;
+        long tableBytes = Long.MAX_VALUE;
+        long hashBytes = Long.MAX_VALUE;
+        long tableOnlyBytes = Long.MAX_VALUE;
+        long hashOnlyBytes = Long.MAX_VALUE;
+        ActiveDownload[] records = new ActiveDownload[downloads];
+        for (int id = 0; id < downloads; id++) {
+            records[id] = record(id, manifests, bitmaps, progress, future);
+        }
+        // Keep the smallest of several rounds; a sample only ever picks up extra garbage
+        for (int r = 0; r < rounds; r++) {
+            oldBytes = Math.min(oldBytes, measure(() -> {
+                List<Map<Integer, ?>> maps = new ArrayList<>();
+                Map<Integer, CompletableFuture<Void>> activeDownloads = new ConcurrentHashMap<>();
+                Map<Integer, List<DownloadTask>> activeTasks = new ConcurrentHashMap<>();
+                Map<Integer, CompletableFuture<Void>> pausingDownloads = new ConcurrentHashMap<>();
+                Map<Integer, DownloadProgress> progressMap = new ConcurrentHashMap<>();
+                Map<Integer, BlockBitmap> blockBitmaps = new ConcurrentHashMap<>();
+                Map<Integer, DownloadManifest> manifestMap = new ConcurrentHashMap<>();
+                for (int id = 0; id < downloads; id++) {
+                    activeDownloads.put(id, future);
+                    activeTasks.put(id, tasks);
+                    pausingDownloads.put(id, future);
+                    progressMap.put(id, progress[id]);
+                    blockBitmaps.put(id, bitmaps[id]);
+                    manifestMap.put(id, manifests[id]);
+                }
+                maps.add(activeDownloads);
+                maps.add(activeTasks);
+                maps.add(pausingDownloads);
+                maps.add(progressMap);
+                maps.add(blockBitmaps);
+                maps.add(manifestMap);
+                return maps;
+            }));
+            tableBytes = Math.min(tableBytes, measure(() -> {
+                IntObjectMap<ActiveDownload> active = new IntObjectMap<>();
+                for (int id = 0; id < downloads; id++) {
+                    active.put(id, record(id, manifests, bitmaps, progress, future));
+                }
+                return active;
+            }));
+            hashBytes = Math.min(hashBytes, measure(() -> {
+                Map<Integer, ActiveDownload> active = new HashMap<>();
+                for (int id = 0; id < downloads; id++) {
+                    active.put(id, record(id, manifests, bitmaps, progress, future));
+                }
+                return active;
+            }));
+            tableOnlyBytes = Math.min(tableOnlyBytes, measure(() -> {
+                IntObjectMap<ActiveDownload> active = new IntObjectMap<>();
+                for (int id = 0; id < downloads; id++) {
+                    active.put(id, records[id]);
+                }
+                return active;
+            }));
+            hashOnlyBytes = Math.min(hashOnlyBytes, measure(() -> {
+                Map<Integer, ActiveDownload> active = new HashMap<>();
+                for (int id = 0; id < downloads; id++) {
+                    active.put(id, records[id]);
+                }
+                return active;
+            }));
+        }
+        report("boxed maps", downloads, oldBytes);
+        report("IntObjectMap", downloads, tableBytes);
+        report("HashMap", downloads, hashBytes);
+        report("  table only", downloads, tableOnlyBytes);
+        report("  HashMap only", downloads, hashOnlyBytes);
+        retained = new Object[] { manifests, bitmaps, progress, records };
+    }
+
+    private interface Build {
+        Object run();
+    }
+
+    private static ActiveDownload record(int id, DownloadManifest[] manifests, BlockBitmap[] bitmaps,
+            DownloadProgress[] progress, CompletableFuture<Void> future) {
+        ActiveDownload a = new ActiveDownload(id, manifests[id], bitmaps[id], progress[id], Collections.emptyList());
+        a.future = future;
+        return a;
+    }
+
+    /**
+     * Returns how much the heap grew while what {@code build} returned was
+     * still reachable.
+     */
+    private static long measure(Build build) throws InterruptedException {
+        retained = null;
+        long before = usedAfterGc();
+        retained = build.run();
+        long after = usedAfterGc();
+        retained = null;
+        return after - before;
+    }
+
+    private static long usedAfterGc() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+
+    private static void report(String layout, int downloads, long bytes) {
+        System.out.println(String.format("%-14s %9d %12.1f %14.1f", layout, downloads, bytes / 1024.0,
+                (double) bytes / downloads));
+    }
+}
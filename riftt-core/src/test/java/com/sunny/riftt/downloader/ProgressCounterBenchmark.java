@@ -0,0 +1,182 @@
+package com.sunny.riftt.downloader;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures what counting progress costs the download threads, comparing the
+ * old per-read path (map lookups and CAS on shared counters on every read)
+ * with the current one (a task-local count published to a
+ * {@link DownloadProgress} every {@link DownloadTask#PUBLISH_BYTES}). Both
+ * run with a reporter thread sampling every 150 ms, as in the manager.
+ * <p>
+ * Lives with the test sources so it stays out of the jar. After
+ * {@code mvn test-compile} in riftt-core:
+ * {@code java -cp target/classes:target/test-classes com.sunny.riftt.downloader.ProgressCounterBenchmark [seconds] [downloads] [threads...]}
+ */
+public final class ProgressCounterBenchmark {
+
+    private static final int READ_SIZE = 8192;
+    private static final long REPORT_INTERVAL_MS = 150;
+
+    private interface Counter {
+        /** Called by a download thread after every read. */
+        void onRead(int downloadId, int bytes);
+
+        /** Called once by a download thread when it is done. */
+        void finish(int downloadId);
+
+        /** Called by the reporter thread. */
+        void report();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int downloads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int[] threadCounts = { 1, 8, 64 };
+        if (args.length > 2) {
+            threadCounts = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                threadCounts[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // Warm both paths up before measuring
+        run(new PerRead(downloads), 8, downloads, 1);
+        run(new Striped(downloads), 8, downloads, 1);
+
+        System.out.println(String.format("%-8s %8s %16s %16s %8s", "threads", "downloads", "per-read Mreads/s",
+                "striped Mreads/s", "ratio"));
+        for (int threads : threadCounts) {
+            double perRead = run(new PerRead(downloads), threads, downloads, seconds);
+            double striped = run(new Striped(downloads), threads, downloads, seconds);
+            System.out.println(String.format("%-8d %8d %16.2f %16.2f %7.1fx", threads, downloads, perRead / 1e6,
+                    striped / 1e6, striped / perRead));
+        }
+    }
+
+    /**
+     * Runs the counter with the given number of download threads for the
+     * given time and returns reads counted per second.
+     */
+    private static double run(Counter counter, int threads, int downloads, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        LongAdder reads = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        Thread reporter = new Thread(() -> {
+            while (done.getCount() > 0) {
+                counter.report();
+                try {
+                    Thread.sleep(REPORT_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "riftt-bench-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int downloadId = t % downloads;
+            Thread worker = new Thread(() -> {
+                long n = 0;
+                while ((n & 1023) != 0 || System.nanoTime() < deadline) {
+                    counter.onRead(downloadId, READ_SIZE);
+                    n++;
+                }
+                counter.finish(downloadId);
+                reads.add(n);
+                done.countDown();
+            }, "riftt-bench-" + t);
+            worker.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        reporter.interrupt();
+        reporter.join();
+        return reads.sum() * 1e9 / elapsed;
+    }
+
+    // The path DownloadManager.onChunkProgress took on every read
+    private static final class PerRead implements Counter {
+        private final Map<Integer, AtomicLong> downloaded = new ConcurrentHashMap<>();
+        private final Map<Integer, Double> progress = new ConcurrentHashMap<>();
+        private final Map<Integer, Long> lastReportedTime = new ConcurrentHashMap<>();
+        private final AtomicLong sessionTotal = new AtomicLong();
+        private final long fileSize = 1L << 40;
+
+        PerRead(int downloads) {
+            for (int id = 0; id < downloads; id++) {
+                downloaded.put(id, new AtomicLong());
+                lastReportedTime.put(id, 0L);
+            }
+        }
+
+        @Override
+        public void onRead(int downloadId, int bytes) {
+            long total = downloaded.get(downloadId).addAndGet(bytes);
+            sessionTotal.addAndGet(bytes);
+            long now = System.currentTimeMillis();
+            Long last = lastReportedTime.get(downloadId);
+            if (now - last >= REPORT_INTERVAL_MS && lastReportedTime.replace(downloadId, last, now)) {
+                progress.put(downloadId, total * 100.0 / fileSize);
+            }
+        }
+
+        @Override
+        public void finish(int downloadId) {
+        }
+
+        @Override
+        public void report() {
+            for (Double p : progress.values()) {
+                if (p < 0)
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    // Task-local counting published to DownloadProgress, as DownloadTask does now
+    private static final class Striped implements Counter {
+        private final DownloadProgress[] progress;
+        private final ThreadLocal<long[]> unpublished = ThreadLocal.withInitial(() -> new long[1]);
+
+        Striped(int downloads) {
+            LongAdder sessionTotal = new LongAdder();
+            progress = new DownloadProgress[downloads];
+            for (int id = 0; id < downloads; id++) {
+                progress[id] = new DownloadProgress(0, 1L << 40, sessionTotal);
+            }
+        }
+
+        @Override
+        public void onRead(int downloadId, int bytes) {
+            // A field of the task in DownloadTask; a thread-local here
+            long[] local = unpublished.get();
+            local[0] += bytes;
+            if (local[0] >= DownloadTask.PUBLISH_BYTES) {
+                progress[downloadId].add(local[0]);
+                local[0] = 0;
+            }
+        }
+
+        @Override
+        public void finish(int downloadId) {
+            long[] local = unpublished.get();
+            progress[downloadId].add(local[0]);
+            local[0] = 0;
+        }
+
+        @Override
+        public void report() {
+            for (DownloadProgress p : progress) {
+                p.takeUnpersisted();
+                p.getPercent();
+            }
+        }
+    }
+}
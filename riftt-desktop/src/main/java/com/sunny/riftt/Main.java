@@ -2,19 +2,27 @@ package com.sunny.riftt;
 
 import com.sunny.riftt.core.IChunkRepository;
 import com.sunny.riftt.core.IDownloadRepository;
-import com.sunny.riftt.core.ILogger;
 import com.sunny.riftt.core.ISettingsProvider;
 import com.sunny.riftt.desktop.DesktopLogger;
 import com.sunny.riftt.desktop.DesktopSettingsProvider;
+import com.sunny.riftt.desktop.database.DatabaseMaintenance;
+import com.sunny.riftt.desktop.database.DatabaseManager;
 import com.sunny.riftt.desktop.repository.JdbcChunkRepository;
 import com.sunny.riftt.desktop.repository.JdbcDownloadRepository;
 import com.sunny.riftt.downloader.DownloadManager;
+import com.sunny.riftt.manager.SettingsManager;
+import com.sunny.riftt.metrics.MetricsRegistry;
+import com.sunny.riftt.metrics.PrometheusFileExporter;
+import com.sunny.riftt.utils.FileUtils;
 import com.sunny.riftt.ui.MainFrame;
 
 import javax.swing.*;
+import java.io.File;
 
 public class Main {
 
+    private static final long METRICS_INTERVAL_MS = 15000L;
+
     public static void main(String[] args) {
         // Use FlatLaf if available, otherwise System L&F
         try {
@@ -25,19 +33,38 @@ public class Main {
 
         SwingUtilities.invokeLater(() -> {
             // 1. Dependency Injection Setup
+            DesktopLogger logger = new DesktopLogger();
+            // Before anything opens the database, so migrations are logged too
+            DatabaseManager.setLogger(logger);
             IDownloadRepository downloadRepo = new JdbcDownloadRepository();
             IChunkRepository chunkRepo = new JdbcChunkRepository();
             ISettingsProvider settings = new DesktopSettingsProvider();
-            ILogger logger = new DesktopLogger();
 
             // 2. Create Core Manager with Dependencies
             DownloadManager manager = new DownloadManager(downloadRepo, chunkRepo, settings, logger);
 
+            // Housekeeping only runs while nothing is downloading
+            DatabaseMaintenance maintenance = new DatabaseMaintenance(DatabaseManager.getInstance(), manager::isIdle,
+                    () -> SettingsManager.getInstance().getArchiveAfterDays(), logger);
+            maintenance.start();
+
+            // Scrapable by node_exporter's textfile collector
+            PrometheusFileExporter metrics = new PrometheusFileExporter(MetricsRegistry.getDefault(),
+                    new File(FileUtils.getAppDataDirectory(), "riftt.prom"), METRICS_INTERVAL_MS, logger);
+            metrics.start();
+
             // 3. Create UI
             MainFrame frame = new MainFrame(manager);
             frame.showFrame();
 
-            Runtime.getRuntime().addShutdownHook(new Thread(manager::shutDown));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                maintenance.stop();
+                manager.shutDown();
+                metrics.stop();
+                // Drains the persistence writer before closing the connection
+                DatabaseManager.getInstance().closeConnection();
+                logger.close();
+            }));
         });
     }
-}
\ No newline at end of file
+}
@@ -1,25 +1,222 @@
 package com.sunny.riftt.desktop;
 
 import com.sunny.riftt.core.ILogger;
+import com.sunny.riftt.core.LogLevel;
+import com.sunny.riftt.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logger that never does I/O on the calling thread. Messages below the
+ * configured level are discarded before anything is formatted; the rest go
+ * into a bounded queue that a background thread drains to a rotating file and,
+ * unless turned off, the console. When the queue is full messages are dropped
+ * and counted rather than blocking the caller.
+ * <p>
+ * The level comes from {@code -Driftt.log.level} (default INFO) and console
+ * output can be turned off with {@code -Driftt.log.console=false}.
+ */
+public class DesktopLogger implements ILogger, AutoCloseable {
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 256;
+    private static final long MAX_FILE_BYTES = 5L * 1024 * 1024;
+    private static final int KEEP_FILES = 3;
+    private static final long CLOSE_TIMEOUT_MS = 2000L;
+
+    private static final class Record {
+        final LogLevel level;
+        final long time;
+        final String thread;
+        final String message;
+        final Throwable error;
+
+        Record(LogLevel level, String message, Throwable error) {
+            this.level = level;
+            this.time = System.currentTimeMillis();
+            this.thread = Thread.currentThread().getName();
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    private final LogLevel threshold;
+    private final boolean console;
+    private final RollingLogFile file;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public DesktopLogger() {
+        this(LogLevel.fromName(System.getProperty("riftt.log.level"), LogLevel.INFO),
+                new File(FileUtils.getAppDataDirectory(), "logs"),
+                !"false".equalsIgnoreCase(System.getProperty("riftt.log.console")));
+    }
 
-public class DesktopLogger implements ILogger {
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    /**
+     * @param directory where {@code riftt.log} and its rotated copies live, or
+     *                  null for console only
+     */
+    public DesktopLogger(LogLevel threshold, File directory, boolean console) {
+        this.threshold = threshold;
+        this.file = directory == null ? null : openFile(directory);
+        this.console = console || file == null;
+        this.writer = new Thread(this::writeLoop, "riftt-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public boolean isEnabled(LogLevel level) {
+        return level.compareTo(threshold) >= 0;
+    }
 
     @Override
     public void log(String message) {
-        System.out.println("[" + LocalDateTime.now().format(formatter) + "] [INFO] " + message);
+        log(LogLevel.INFO, message, null);
     }
 
     @Override
     public void error(String message) {
-        System.err.println("[" + LocalDateTime.now().format(formatter) + "] [ERROR] " + message);
+        log(LogLevel.ERROR, message, null);
     }
 
     @Override
     public void error(String string, Exception e) {
-        System.err
-                .println("[" + LocalDateTime.now().format(formatter) + "] [ERROR] " + string + " - " + e.getMessage());
+        log(LogLevel.ERROR, string, e);
+    }
+
+    @Override
+    public void log(LogLevel level, String message, Throwable t) {
+        if (!isEnabled(level))
+            return;
+        if (!running || !queue.offer(new Record(level, message, t)))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     * Messages lost because the queue was full or the logger was closed.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Writes out what is queued, within a short timeout, and closes the file.
+     * Later messages are dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static RollingLogFile openFile(File directory) {
+        try {
+            return new RollingLogFile(directory, "riftt.log", MAX_FILE_BYTES, KEEP_FILES);
+        } catch (IOException e) {
+            System.err.println("[DesktopLogger] Logging to console only: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        long reported = 0;
+        while (running || !queue.isEmpty()) {
+            try {
+                Record first = queue.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (Record r : batch) {
+                    write(r);
+                }
+                batch.clear();
+                reported = reportDropped(reported);
+                if (queue.isEmpty())
+                    flush();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        reportDropped(reported);
+        flush();
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private long reportDropped(long reported) {
+        long lost = dropped.get();
+        if (lost > reported)
+            write(new Record(LogLevel.WARN, (lost - reported) + " log messages dropped", null));
+        return lost;
+    }
+
+    private void write(Record r) {
+        String line = "[" + LocalDateTime.ofInstant(Instant.ofEpochMilli(r.time), zone).format(formatter) + "] ["
+                + r.level + "] [" + r.thread + "] " + r.message
+                + (r.error != null ? " - " + r.error.getMessage() : "");
+        if (console) {
+            if (r.level.compareTo(LogLevel.WARN) >= 0) {
+                System.err.println(line);
+            } else {
+                System.out.println(line);
+            }
+        }
+        if (file == null)
+            return;
+        try {
+            file.write(line + System.lineSeparator());
+            if (r.error != null)
+                file.write(stackTrace(r.error));
+        } catch (IOException e) {
+            System.err.println("[DesktopLogger] Write to " + file.getFile() + " failed: " + e.getMessage());
+        }
+    }
+
+    private void flush() {
+        if (file == null)
+            return;
+        try {
+            file.flush();
+        } catch (IOException e) {
+            System.err.println("[DesktopLogger] Flush of " + file.getFile() + " failed: " + e.getMessage());
+        }
+    }
+
+    private static String stackTrace(Throwable t) {
+        StringWriter sw = new StringWriter();
+        t.printStackTrace(new PrintWriter(sw));
+        return sw.toString();
     }
 }
@@ -2,6 +2,7 @@ package com.sunny.riftt.desktop;
 
 import com.sunny.riftt.core.ISettingsProvider;
 import com.sunny.riftt.manager.SettingsManager;
+import com.sunny.riftt.storage.DurabilityMode;
 
 public class DesktopSettingsProvider implements ISettingsProvider {
 
@@ -24,4 +25,9 @@ public class DesktopSettingsProvider implements ISettingsProvider {
     public int getConnectionTimeout() {
         return SettingsManager.getInstance().getConnectionTimeout();
     }
+
+    @Override
+    public DurabilityMode getDurabilityMode() {
+        return SettingsManager.getInstance().getDurabilityMode();
+    }
 }
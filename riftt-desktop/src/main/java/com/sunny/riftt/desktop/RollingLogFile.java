@@ -0,0 +1,102 @@
+package com.sunny.riftt.desktop;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only log file that is renamed to {@code name.1} once it grows past a
+ * size limit, shifting older files up and deleting the oldest. If the files
+ * cannot be moved (another process holding them open, say) logging carries on
+ * in the current file and rotation is tried again once it has grown by
+ * another limit. Not thread safe; {@link DesktopLogger} only uses it from its
+ * writer thread.
+ */
+final class RollingLogFile implements Closeable {
+
+    private final File file;
+    private final long maxBytes;
+    private final int keep;
+    private Writer out; // null after a failed open, retried on the next write
+    private long size;
+    private long rotateAt;
+
+    RollingLogFile(File directory, String name, long maxBytes, int keep) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        this.file = new File(directory, name);
+        this.maxBytes = maxBytes;
+        this.keep = keep;
+        this.rotateAt = maxBytes;
+        open();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    void write(String text) throws IOException {
+        if (out == null)
+            open();
+        else if (size > 0 && size + text.length() > rotateAt)
+            rotate();
+        out.write(text);
+        // Characters, not bytes; close enough for mostly ASCII log lines
+        size += text.length();
+    }
+
+    void flush() throws IOException {
+        if (out != null)
+            out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null)
+            out.close();
+    }
+
+    private void open() throws IOException {
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        size = file.length();
+    }
+
+    private void rotate() throws IOException {
+        Writer current = out;
+        out = null;
+        current.close();
+        try {
+            shift();
+            rotateAt = maxBytes;
+        } catch (IOException e) {
+            System.err.println("[RollingLogFile] Cannot rotate " + file + ", still appending: " + e.getMessage());
+            rotateAt = file.length() + maxBytes;
+        }
+        open();
+    }
+
+    private void shift() throws IOException {
+        File oldest = rotated(keep);
+        if (oldest.exists() && !oldest.delete())
+            throw new IOException("Cannot delete " + oldest);
+        for (int i = keep - 1; i >= 1; i--) {
+            File f = rotated(i);
+            if (f.exists() && !f.renameTo(rotated(i + 1)))
+                throw new IOException("Cannot rename " + f);
+        }
+        if (keep > 0 && !file.renameTo(rotated(1))) {
+            throw new IOException("Cannot rename " + file);
+        } else if (keep == 0 && !file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+    }
+
+    private File rotated(int index) {
+        return new File(file.getParentFile(), file.getName() + "." + index);
+    }
+}
@@ -0,0 +1,226 @@
+package com.sunny.riftt.desktop.database;
+
+import com.sunny.riftt.core.ILogger;
+import com.sunny.riftt.model.DownloadStatus;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Background housekeeping for the database. While no download is running it
+ * periodically moves old completed downloads to the archive table, removes
+ * chunk rows nobody needs any more (orphans and those of completed
+ * downloads), returns free pages to the file system with incremental vacuum
+ * and refreshes planner statistics with ANALYZE.
+ */
+public class DatabaseMaintenance {
+
+    private static final long IDLE_CHECK_MINUTES = 5;
+    private static final long RUN_INTERVAL_MS = TimeUnit.HOURS.toMillis(6);
+    // Bounds a single run; the rest is picked up next time
+    private static final int MAX_PAGES_PER_RUN = 4096;
+
+    /**
+     * What one maintenance run did.
+     */
+    public static class Report {
+        public final int downloadsArchived;
+        public final int orphanChunksDeleted;
+        public final int completedChunksDeleted;
+        public final int bitmapsDeleted;
+        public final int pagesFreed;
+        public final long sizeBeforeBytes;
+        public final long sizeAfterBytes;
+        public final long durationMillis;
+
+        Report(int downloadsArchived, int orphanChunksDeleted, int completedChunksDeleted, int bitmapsDeleted, int pagesFreed,
+                long sizeBeforeBytes, long sizeAfterBytes, long durationMillis) {
+            this.downloadsArchived = downloadsArchived;
+            this.orphanChunksDeleted = orphanChunksDeleted;
+            this.completedChunksDeleted = completedChunksDeleted;
+            this.bitmapsDeleted = bitmapsDeleted;
+            this.pagesFreed = pagesFreed;
+            this.sizeBeforeBytes = sizeBeforeBytes;
+            this.sizeAfterBytes = sizeAfterBytes;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "archived=" + downloadsArchived + ", orphan chunks=" + orphanChunksDeleted + ", completed chunks=" + completedChunksDeleted
+                    + ", bitmaps=" + bitmapsDeleted + ", pages freed=" + pagesFreed + ", size "
+                    + sizeBeforeBytes + " -> " + sizeAfterBytes + " bytes in " + durationMillis + " ms";
+        }
+    }
+
+    private final IConnectionProvider connectionProvider;
+    private final BooleanSupplier idle;
+    private final IntSupplier archiveAfterDays;
+    private final ILogger logger;
+    private ScheduledExecutorService scheduler;
+    private volatile long lastRunMillis;
+    private volatile Report lastReport;
+
+    public DatabaseMaintenance(IConnectionProvider connectionProvider, BooleanSupplier idle,
+            IntSupplier archiveAfterDays, ILogger logger) {
+        this.connectionProvider = connectionProvider;
+        this.idle = idle;
+        this.archiveAfterDays = archiveAfterDays;
+        this.logger = logger;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null)
+            return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "riftt-db-maintenance");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runIfDue, 1, IDLE_CHECK_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    private void runIfDue() {
+        if (System.currentTimeMillis() - lastRunMillis < RUN_INTERVAL_MS || !idle.getAsBoolean())
+            return;
+        try {
+            Report report = runNow();
+            logger.log("Database maintenance: " + report);
+        } catch (Exception e) {
+            logger.error("Database maintenance failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs one maintenance pass immediately on the writer connection.
+     */
+    public Report runNow() throws SQLException {
+        long start = System.currentTimeMillis();
+        int days = archiveAfterDays.getAsInt();
+        long cutoff = start - TimeUnit.DAYS.toMillis(days);
+        Report report = connectionProvider.write(conn -> {
+            Connection c = conn.getConnection();
+            long sizeBefore = databaseSize(c);
+
+            int archived = 0;
+            int orphans;
+            int completed;
+            int bitmaps;
+            c.setAutoCommit(false);
+            try {
+                if (days > 0) {
+                    // Copy then delete in one transaction; chunks and bitmaps cascade with the row
+                    PreparedStatement copy = conn.prepare("INSERT OR REPLACE INTO downloads_archive "
+                            + "(id, filename, url, file_size, download_path, completed_at) "
+                            + "SELECT id, filename, url, file_size, download_path, COALESCE(end_time, start_time) "
+                            + "FROM downloads WHERE status = ? AND COALESCE(end_time, start_time) < ?");
+                    copy.setInt(1, DownloadStatus.COMPLETED.getCode());
+                    copy.setLong(2, cutoff);
+                    archived = copy.executeUpdate();
+
+                    PreparedStatement move = conn.prepare(
+                            "DELETE FROM downloads WHERE status = ? AND COALESCE(end_time, start_time) < ?");
+                    move.setInt(1, DownloadStatus.COMPLETED.getCode());
+                    move.setLong(2, cutoff);
+                    move.executeUpdate();
+                }
+
+                PreparedStatement st = conn.prepare(
+                        "DELETE FROM download_chunks WHERE download_id NOT IN (SELECT id FROM downloads)");
+                orphans = st.executeUpdate();
+
+                // Chunk layout and bitmap only matter for resuming; a completed download never resumes
+                st = conn.prepare("DELETE FROM download_chunks WHERE download_id IN "
+                        + "(SELECT id FROM downloads WHERE status = ?)");
+                st.setInt(1, DownloadStatus.COMPLETED.getCode());
+                completed = st.executeUpdate();
+
+                st = conn.prepare("DELETE FROM download_blocks WHERE download_id NOT IN "
+                        + "(SELECT id FROM downloads WHERE status <> ?)");
+                st.setInt(1, DownloadStatus.COMPLETED.getCode());
+                bitmaps = st.executeUpdate();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+
+            int freed = reclaimPages(c);
+            try (Statement stmt = c.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+
+            return new Report(archived, orphans, completed, bitmaps, freed, sizeBefore, databaseSize(c),
+                    System.currentTimeMillis() - start);
+        });
+        lastRunMillis = System.currentTimeMillis();
+        lastReport = report;
+        return report;
+    }
+
+    private int reclaimPages(Connection c) throws SQLException {
+        int before = pragmaInt(c, "page_count");
+        try (Statement stmt = c.createStatement()) {
+            if (pragmaInt(c, "auto_vacuum") != 2) {
+                // Databases created before incremental mode need one full VACUUM to switch over
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM");
+                return Math.max(0, before - pragmaInt(c, "page_count"));
+            }
+        }
+
+        int pages = Math.min(pragmaInt(c, "freelist_count"), MAX_PAGES_PER_RUN);
+        if (pages == 0)
+            return 0;
+        c.setAutoCommit(false);
+        try {
+            // The driver steps a pragma once and each step frees one page; the
+            // statement must be closed before commit or SQLite reports it busy
+            try (Statement vacuum = c.createStatement()) {
+                for (int i = 0; i < pages; i++) {
+                    vacuum.execute("PRAGMA incremental_vacuum(1)");
+                }
+            }
+            c.commit();
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
+        }
+        return Math.max(0, before - pragmaInt(c, "page_count"));
+    }
+
+    private static long databaseSize(Connection c) throws SQLException {
+        return (long) pragmaInt(c, "page_count") * pragmaInt(c, "page_size");
+    }
+
+    private static int pragmaInt(Connection c, String pragma) throws SQLException {
+        try (Statement stmt = c.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -1,83 +1,204 @@
 package com.sunny.riftt.desktop.database;
 
+import com.sunny.riftt.core.ILogger;
+import com.sunny.riftt.core.LogLevel;
+import com.sunny.riftt.desktop.DesktopLogger;
+import com.sunny.riftt.metrics.Histogram;
+import com.sunny.riftt.metrics.MetricsRegistry;
 import com.sunny.riftt.utils.FileUtils;
-import com.sunny.riftt.desktop.database.IConnectionProvider;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Owns the SQLite connections. The database runs in WAL mode with one writer
+ * connection, on which every write is serialized, and a few reader
+ * connections, so UI queries are not blocked by progress writes from the
+ * download threads. Each connection keeps its own prepared statement cache.
+ */
 public class DatabaseManager implements IConnectionProvider {
 
     private static DatabaseManager instance;
+    private static ILogger logger;
 
     private static final String DB_NAME = "test.db";
 
+    private static final int READER_COUNT = 3;
+    private static final int BUSY_TIMEOUT_MS = 5000;
+
+    // Every DAO call runs through write() or read(), so timing them here covers all statements
+    private static final Histogram WRITE_TIME = MetricsRegistry.getDefault().histogram(
+            "riftt_db_statement_seconds", "Time a DAO call spends on its connection", "kind", "write");
+    private static final Histogram READ_TIME = MetricsRegistry.getDefault().histogram(
+            "riftt_db_statement_seconds", "Time a DAO call spends on its connection", "kind", "read");
+    private static final Histogram WRITE_WAIT = MetricsRegistry.getDefault().histogram(
+            "riftt_db_wait_seconds", "Time a DAO call waits for a connection", "kind", "write");
+    private static final Histogram READ_WAIT = MetricsRegistry.getDefault().histogram(
+            "riftt_db_wait_seconds", "Time a DAO call waits for a connection", "kind", "read");
+
     private static String DB_PATH = "";
 
-    private Connection connection;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private PooledConnection writer;
+
+    private final BlockingQueue<PooledConnection> idleReaders = new ArrayBlockingQueue<>(READER_COUNT);
+    private final AtomicInteger openReaders = new AtomicInteger();
+
+    private final PersistenceWriter persistenceWriter;
 
     private DatabaseManager() {
         DB_PATH = getDBPath();
+        persistenceWriter = new PersistenceWriter(this, getLogger());
+    }
+
+    /**
+     * Sets where the database layer logs. Call before the first
+     * {@link #getInstance()}; without it messages only go to the console.
+     */
+    public static synchronized void setLogger(ILogger l) {
+        logger = l;
+    }
+
+    public static synchronized ILogger getLogger() {
+        if (logger == null)
+            logger = new DesktopLogger(LogLevel.INFO, null, true);
+        return logger;
+    }
+
+    public PersistenceWriter getPersistenceWriter() {
+        return persistenceWriter;
     }
 
     @Override
-    public Connection getConnection() {
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        long start = System.nanoTime();
+        writeLock.lock();
         try {
-            if (connection == null || connection.isClosed()) {
-                synchronized (DatabaseManager.class) {
-                    if (connection == null || connection.isClosed()) {
-                        connection = DriverManager.getConnection("jdbc:sqlite:" + DB_PATH);
-                    }
-                }
+            if (writer == null || writer.getConnection().isClosed()) {
+                writer = open(false);
+            }
+            long acquired = System.nanoTime();
+            WRITE_WAIT.record(acquired - start);
+            try {
+                return work.run(writer);
+            } finally {
+                WRITE_TIME.recordSince(acquired);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection reader = acquireReader();
+        long acquired = System.nanoTime();
+        READ_WAIT.record(acquired - start);
+        boolean healthy = false;
+        try {
+            T result = work.run(reader);
+            healthy = true;
+            return result;
+        } finally {
+            READ_TIME.recordSince(acquired);
+            releaseReader(reader, healthy);
+        }
+    }
+
+    private PooledConnection acquireReader() throws SQLException {
+        PooledConnection reader = idleReaders.poll();
+        if (reader != null)
+            return reader;
+
+        if (openReaders.incrementAndGet() <= READER_COUNT) {
+            try {
+                return open(true);
+            } catch (SQLException e) {
+                openReaders.decrementAndGet();
+                throw e;
+            }
+        }
+        openReaders.decrementAndGet();
+
+        try {
+            reader = idleReaders.poll(BUSY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection");
+        }
+        if (reader == null)
+            throw new SQLException("Timed out waiting for a database connection");
+        return reader;
+    }
+
+    private void releaseReader(PooledConnection reader, boolean healthy) {
+        try {
+            if (healthy && !reader.getConnection().isClosed() && idleReaders.offer(reader))
+                return;
+        } catch (SQLException ignored) {
+        }
+        // A reader that failed is replaced on next use instead of going back in the pool
+        reader.close();
+        openReaders.decrementAndGet();
+    }
+
+    private PooledConnection open(boolean readOnly) throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DB_PATH);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            // Off by default in SQLite; without it ON DELETE CASCADE never fires
+            stmt.execute("PRAGMA foreign_keys = ON");
+            if (!readOnly) {
+                // WAL is persistent in the file; setting it once from the writer is enough
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            // NORMAL only fsyncs at checkpoints in WAL mode; committed data survives an app crash
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
             }
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            conn.close();
+            throw e;
         }
-        return connection;
+        return new PooledConnection(conn, getLogger());
     }
 
     public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (Exception e) {
-                e.printStackTrace();
+        persistenceWriter.close();
+        writeLock.lock();
+        try {
+            if (writer != null) {
+                writer.close();
+                writer = null;
             }
+        } finally {
+            writeLock.unlock();
+        }
+        PooledConnection reader;
+        while ((reader = idleReaders.poll()) != null) {
+            reader.close();
+            openReaders.decrementAndGet();
         }
     }
 
     public void initializeDatabase() {
-        String sql = "CREATE TABLE IF NOT EXISTS downloads (\n" +
-                "    id INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
-                "    filename VARCHAR(255),\n" +
-                "    url TEXT NOT NULL,\n" +
-                "    file_size LONG,\n" +
-                "    downloaded_size LONG DEFAULT 0,\n" +
-                "    status VARCHAR(20),\n" +
-                "    download_path TEXT,\n" +
-                "    start_time TIMESTAMP,\n" +
-                "    end_time TIMESTAMP,\n" +
-                "    thread_count INTEGER DEFAULT 1\n" +
-                ");";
-
-        String chunksSql = "CREATE TABLE IF NOT EXISTS download_chunks (\n" +
-                "    id INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
-                "    download_id INTEGER,\n" +
-                "    start_byte LONG,\n" +
-                "    end_byte LONG,\n" +
-                "    current_offset LONG,\n" +
-                "    status VARCHAR(20),\n" +
-                "    FOREIGN KEY(download_id) REFERENCES downloads(id) ON DELETE CASCADE\n" +
-                ");";
-
-        try (Statement stmt = getConnection().createStatement()) {
-            stmt.execute(sql);
-            stmt.execute(chunksSql);
+        try {
+            write(conn -> {
+                new SchemaMigrator(getLogger()).migrate(conn.getConnection());
+                return null;
+            });
         } catch (Exception e) {
-            System.err.println("[DatabaseManager] DB Init Error: " + e.getMessage());
+            getLogger().error("Database initialization failed", e);
         }
     }
 
@@ -89,7 +210,11 @@ public class DatabaseManager implements IConnectionProvider {
         return instance;
     }
 
+    // -Driftt.db.path points tools and benchmarks at a scratch database
     private String getDBPath() {
+        String override = System.getProperty("riftt.db.path");
+        if (override != null && !override.isEmpty())
+            return override;
         String appDataPath = FileUtils.getAppDataDirectory();
         return appDataPath + File.separator + DB_NAME;
     }
@@ -3,6 +3,7 @@ package com.sunny.riftt.desktop.database;
 import com.sunny.riftt.exceptions.DatabaseException;
 import com.sunny.riftt.model.Download;
 import com.sunny.riftt.model.DownloadStatus;
+import com.sunny.riftt.model.DownloadSummary;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -21,34 +22,39 @@ public class DownloadDAO {
                 +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement st = connectionProvider.getConnection()
-                .prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try {
+            return connectionProvider.write(conn -> {
+                PreparedStatement st = conn.prepareWithKeys(sql);
 
-            setFields(download, st);
+                setFields(download, st);
 
-            st.executeUpdate();
+                st.executeUpdate();
 
-            try (ResultSet generatedKeys = st.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    return generatedKeys.getInt(1);
+                try (ResultSet generatedKeys = st.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        return generatedKeys.getInt(1);
+                    }
                 }
-            }
+                return -1;
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to insert download", e);
         }
-        return -1;
     }
 
     public void updateDownload(Download download) {
         String sql = "UPDATE downloads SET filename=?, url=?, file_size=?, downloaded_size=?, status=?, " +
                 "download_path=?, start_time=?, end_time=?, thread_count=? WHERE id=?";
 
-        try (PreparedStatement st = connectionProvider.getConnection().prepareStatement(sql)) {
+        try {
+            connectionProvider.write(conn -> {
+                PreparedStatement st = conn.prepare(sql);
 
-            setFields(download, st);
-            st.setInt(10, download.getId());
+                setFields(download, st);
+                st.setInt(10, download.getId());
 
-            st.executeUpdate();
+                return st.executeUpdate();
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update download", e);
         }
@@ -56,10 +62,13 @@ public class DownloadDAO {
 
     public void updateDownloadStatus(int downloadId, DownloadStatus status) {
         String sql = "UPDATE downloads SET status = ? WHERE id = ?";
-        try (PreparedStatement st = connectionProvider.getConnection().prepareStatement(sql)) {
-            st.setString(1, status.name());
-            st.setInt(2, downloadId);
-            st.executeUpdate();
+        try {
+            connectionProvider.write(conn -> {
+                PreparedStatement st = conn.prepare(sql);
+                st.setInt(1, status.getCode());
+                st.setInt(2, downloadId);
+                return st.executeUpdate();
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update download status", e);
         }
@@ -67,10 +76,13 @@ public class DownloadDAO {
 
     public void updateEndTime(int downloadId, Timestamp endTime) {
         String sql = "UPDATE downloads SET end_time = ? WHERE id = ?";
-        try (PreparedStatement st = connectionProvider.getConnection().prepareStatement(sql)) {
-            st.setTimestamp(1, endTime);
-            st.setInt(2, downloadId);
-            st.executeUpdate();
+        try {
+            connectionProvider.write(conn -> {
+                PreparedStatement st = conn.prepare(sql);
+                st.setTimestamp(1, endTime);
+                st.setInt(2, downloadId);
+                return st.executeUpdate();
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update end time", e);
         }
@@ -81,7 +93,7 @@ public class DownloadDAO {
         st.setString(2, download.getUrl());
         st.setLong(3, download.getFileSize());
         st.setLong(4, download.getDownloadedSize());
-        st.setString(5, download.getStatus().name());
+        st.setInt(5, download.getStatus().getCode());
         st.setString(6, download.getDownloadPath());
         st.setTimestamp(7, download.getStartTime());
         st.setTimestamp(8, download.getEndTime());
@@ -91,58 +103,141 @@ public class DownloadDAO {
     public Download getDownloadById(int id) throws DatabaseException {
         String sql = "SELECT * FROM downloads WHERE id = ?";
 
-        try (PreparedStatement st = connectionProvider.getConnection().prepareStatement(sql)) {
-            st.setInt(1, id);
-            try (ResultSet rs = st.executeQuery()) {
-                if (rs.next()) {
-                    return mapResultSetToDownload(rs);
+        try {
+            return connectionProvider.read(conn -> {
+                PreparedStatement st = conn.prepare(sql);
+                st.setInt(1, id);
+                try (ResultSet rs = st.executeQuery()) {
+                    return rs.next() ? mapResultSetToDownload(rs) : null;
                 }
-            }
+            });
         } catch (SQLException e) {
             throw new DatabaseException("Failed to retrieve download by ID: " + id);
         }
-        return null;
     }
 
     public List<Download> getAllDownloads() {
-        List<Download> downloads = new ArrayList<>();
         String sql = "SELECT * FROM downloads";
 
-        try (PreparedStatement st = connectionProvider.getConnection().prepareStatement(sql);
-                ResultSet rs = st.executeQuery()) {
-
-            while (rs.next()) {
-                downloads.add(mapResultSetToDownload(rs));
-            }
+        try {
+            return connectionProvider.read(conn -> {
+                List<Download> downloads = new ArrayList<>();
+                try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        downloads.add(mapResultSetToDownload(rs));
+                    }
+                }
+                return downloads;
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve all downloads", e);
         }
-        return downloads;
     }
 
     public List<Download> getDownloadsByStatus(DownloadStatus status) {
-        List<Download> downloads = new ArrayList<>();
         String sql = "SELECT * FROM downloads WHERE status = ?";
 
-        try (PreparedStatement st = connectionProvider.getConnection().prepareStatement(sql)) {
-            st.setString(1, status.name());
-            try (ResultSet rs = st.executeQuery()) {
-                while (rs.next()) {
-                    downloads.add(mapResultSetToDownload(rs));
+        try {
+            return connectionProvider.read(conn -> {
+                List<Download> downloads = new ArrayList<>();
+                PreparedStatement st = conn.prepare(sql);
+                st.setInt(1, status.getCode());
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        downloads.add(mapResultSetToDownload(rs));
+                    }
                 }
-            }
+                return downloads;
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to retrieve downloads by status: " + status, e);
         }
-        return downloads;
+    }
+
+    public List<DownloadSummary> getDownloadSummaries(DownloadStatus status, int offset, int limit) {
+        String sql = "SELECT id, filename, status, file_size, downloaded_size FROM downloads"
+                + (status != null ? " WHERE status = ?" : "")
+                + " ORDER BY id DESC LIMIT ? OFFSET ?";
+
+        try {
+            return connectionProvider.read(conn -> {
+                List<DownloadSummary> summaries = new ArrayList<>();
+                PreparedStatement st = conn.prepare(sql);
+                int i = 1;
+                if (status != null)
+                    st.setInt(i++, status.getCode());
+                st.setInt(i++, limit);
+                st.setInt(i, offset);
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        summaries.add(new DownloadSummary(rs.getInt("id"), rs.getString("filename"),
+                                DownloadStatus.fromCode(rs.getInt("status")), rs.getLong("file_size"),
+                                rs.getLong("downloaded_size")));
+                    }
+                }
+                return summaries;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to retrieve download summaries", e);
+        }
+    }
+
+    public int countDownloads(DownloadStatus status) {
+        String sql = "SELECT COUNT(*) FROM downloads" + (status != null ? " WHERE status = ?" : "");
+
+        try {
+            return connectionProvider.read(conn -> {
+                PreparedStatement st = conn.prepare(sql);
+                if (status != null)
+                    st.setInt(1, status.getCode());
+                try (ResultSet rs = st.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to count downloads", e);
+        }
+    }
+
+    public List<DownloadSummary> searchArchive(String query, int offset, int limit) {
+        String sql = "SELECT id, filename, file_size FROM downloads_archive"
+                + " WHERE filename LIKE ? ESCAPE '\\' ORDER BY completed_at DESC, id DESC LIMIT ? OFFSET ?";
+        String pattern = "%" + (query == null ? "" : query.replace("\\", "\\\\").replace("%", "\\%")
+                .replace("_", "\\_")) + "%";
+
+        try {
+            return connectionProvider.read(conn -> {
+                List<DownloadSummary> summaries = new ArrayList<>();
+                PreparedStatement st = conn.prepare(sql);
+                st.setString(1, pattern);
+                st.setInt(2, limit);
+                st.setInt(3, offset);
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        long size = rs.getLong("file_size");
+                        summaries.add(new DownloadSummary(rs.getInt("id"), rs.getString("filename"),
+                                DownloadStatus.COMPLETED, size, size));
+                    }
+                }
+                return summaries;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to search archive", e);
+        }
     }
 
     public boolean deleteDownload(int id) {
         String sql = "DELETE FROM downloads WHERE id = ?";
 
-        try (PreparedStatement st = connectionProvider.getConnection().prepareStatement(sql)) {
-            st.setInt(1, id);
-            return st.executeUpdate() > 0;
+        try {
+            return connectionProvider.write(conn -> {
+                PreparedStatement blocks = conn.prepare("DELETE FROM download_blocks WHERE download_id = ?");
+                blocks.setInt(1, id);
+                blocks.executeUpdate();
+                PreparedStatement st = conn.prepare(sql);
+                st.setInt(1, id);
+                return st.executeUpdate() > 0;
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete download with ID: " + id, e);
         }
@@ -150,8 +245,14 @@ public class DownloadDAO {
 
     public void clearAllDownloads() {
         String sql = "DELETE FROM downloads";
-        try (Statement st = connectionProvider.getConnection().createStatement()) {
-            st.executeUpdate(sql);
+        try {
+            connectionProvider.write(conn -> {
+                try (Statement st = conn.getConnection().createStatement()) {
+                    st.executeUpdate("DELETE FROM download_blocks");
+                    st.executeUpdate("DELETE FROM downloads_archive");
+                    return st.executeUpdate(sql);
+                }
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to clear all downloads", e);
         }
@@ -164,7 +265,7 @@ public class DownloadDAO {
         download.setUrl(rs.getString("url"));
         download.setFileSize(rs.getLong("file_size"));
         download.setDownloadedSize(rs.getLong("downloaded_size"));
-        download.setStatus(DownloadStatus.valueOf(rs.getString("status")));
+        download.setStatus(DownloadStatus.fromCode(rs.getInt("status")));
         download.setDownloadPath(rs.getString("download_path"));
         download.setStartTime(rs.getTimestamp("start_time"));
         download.setEndTime(rs.getTimestamp("end_time"));
@@ -172,14 +273,51 @@ public class DownloadDAO {
         return download;
     }
 
-    public synchronized void updateDownloadedSize(int downloadId, long bytesToAdd) {
+    public void updateDownloadedSize(int downloadId, long bytesToAdd) {
         String sql = "UPDATE downloads SET downloaded_size = downloaded_size + ? WHERE id = ?";
-        try (PreparedStatement st = connectionProvider.getConnection().prepareStatement(sql)) {
-            st.setLong(1, bytesToAdd);
-            st.setInt(2, downloadId);
-            st.executeUpdate();
+        try {
+            connectionProvider.write(conn -> {
+                PreparedStatement st = conn.prepare(sql);
+                st.setLong(1, bytesToAdd);
+                st.setInt(2, downloadId);
+                return st.executeUpdate();
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update downloaded size for download with ID: " + downloadId, e);
         }
     }
+
+    public void saveBlockBitmap(int downloadId, int blockSize, byte[] bitmap) {
+        String sql = "INSERT OR REPLACE INTO download_blocks (download_id, block_size, bitmap) VALUES (?, ?, ?)";
+        try {
+            connectionProvider.write(conn -> {
+                PreparedStatement st = conn.prepare(sql);
+                st.setInt(1, downloadId);
+                st.setInt(2, blockSize);
+                st.setBytes(3, bitmap);
+                return st.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save block bitmap for download with ID: " + downloadId, e);
+        }
+    }
+
+    public byte[] getBlockBitmap(int downloadId, int blockSize) {
+        String sql = "SELECT block_size, bitmap FROM download_blocks WHERE download_id = ?";
+        try {
+            return connectionProvider.read(conn -> {
+                PreparedStatement st = conn.prepare(sql);
+                st.setInt(1, downloadId);
+                try (ResultSet rs = st.executeQuery()) {
+                    // A bitmap written with a different block size cannot be trusted
+                    if (rs.next() && rs.getInt("block_size") == blockSize) {
+                        return rs.getBytes("bitmap");
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load block bitmap for download with ID: " + downloadId, e);
+        }
+    }
 }
@@ -1,8 +1,11 @@
 package com.sunny.riftt.desktop.database;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 
 public interface IConnectionProvider {
-    Connection getConnection() throws SQLException;
+    // All writes share the single writer connection and are serialized
+    <T> T write(SqlWork<T> work) throws SQLException;
+
+    // Reads run on one of the reader connections and never wait for writers
+    <T> T read(SqlWork<T> work) throws SQLException;
 }
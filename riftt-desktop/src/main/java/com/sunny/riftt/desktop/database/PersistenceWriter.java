@@ -0,0 +1,267 @@
+package com.sunny.riftt.desktop.database;
+
+import com.sunny.riftt.core.ILogger;
+import com.sunny.riftt.metrics.MetricsRegistry;
+import com.sunny.riftt.model.ChunkStatus;
+import com.sunny.riftt.model.DownloadChunk;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single background writer for the high-frequency progress updates coming from
+ * download threads. Updates are merged in memory (only the latest offset per
+ * chunk and the summed size delta per download survive) and written in one
+ * transaction every {@link #FLUSH_INTERVAL_MS}, so callers never wait on SQLite.
+ * Readers do not flush; they read committed rows, at most one interval behind,
+ * and can lay the queued chunk progress over them with {@link #overlayPending}.
+ */
+public class PersistenceWriter {
+
+    public static final long FLUSH_INTERVAL_MS = 250L;
+
+    private static final String CHUNK_SQL = "UPDATE download_chunks SET current_offset = ?, status = ? WHERE id = ?";
+    private static final String SIZE_SQL = "UPDATE downloads SET downloaded_size = downloaded_size + ? WHERE id = ?";
+
+    private static final class PendingChunk {
+        final long offset;
+        final String status;
+
+        PendingChunk(long offset, String status) {
+            this.offset = offset;
+            this.status = status;
+        }
+    }
+
+    private final IConnectionProvider connectionProvider;
+    private final ILogger logger;
+    private final ConcurrentHashMap<Integer, PendingChunk> pendingChunks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Long> pendingSizes = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService scheduler;
+
+    // Metrics
+    private final AtomicLong updatesReceived = new AtomicLong();
+    private final AtomicLong updatesMerged = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+
+    public PersistenceWriter(IConnectionProvider connectionProvider, ILogger logger) {
+        this.connectionProvider = connectionProvider;
+        this.logger = logger;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "riftt-db-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        registerGauges();
+    }
+
+    // A later writer in the same process takes the gauges over
+    private void registerGauges() {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge("riftt_db_writer_queue_depth", "Chunk and size updates waiting for the next flush",
+                this::getQueueDepth);
+        metrics.gauge("riftt_db_writer_flush_seconds", "Last, longest and mean progress flush",
+                () -> lastFlushNanos / 1e9, "stat", "last");
+        metrics.gauge("riftt_db_writer_flush_seconds", "Last, longest and mean progress flush",
+                () -> maxFlushNanos / 1e9, "stat", "max");
+        metrics.gauge("riftt_db_writer_flush_seconds", "Last, longest and mean progress flush",
+                () -> getAverageFlushMillis() / 1e3, "stat", "mean");
+        metrics.gauge("riftt_db_writer_flushes", "Progress flushes written", this::getFlushCount);
+        metrics.gauge("riftt_db_writer_failed_flushes", "Progress flushes that failed and were queued again",
+                this::getFailedFlushes);
+    }
+
+    public void enqueueChunkProgress(int chunkId, long currentOffset, String status) {
+        updatesReceived.incrementAndGet();
+        if (pendingChunks.put(chunkId, new PendingChunk(currentOffset, status)) != null) {
+            updatesMerged.incrementAndGet();
+        }
+    }
+
+    public void enqueueDownloadedSize(int downloadId, long bytesToAdd) {
+        updatesReceived.incrementAndGet();
+        if (pendingSizes.merge(downloadId, bytesToAdd, Long::sum) != bytesToAdd) {
+            updatesMerged.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops the queued size delta of a download whose absolute size is about
+     * to be written, so the delta is not added on top of it afterwards.
+     */
+    public void discardDownloadedSize(int downloadId) {
+        pendingSizes.remove(downloadId);
+    }
+
+    /**
+     * Replaces the offset and status of every chunk that has newer progress
+     * queued than what was read from the database.
+     */
+    public void overlayPending(List<DownloadChunk> chunks) {
+        if (pendingChunks.isEmpty())
+            return;
+        for (DownloadChunk chunk : chunks) {
+            PendingChunk p = pendingChunks.get(chunk.getId());
+            if (p != null) {
+                chunk.setCurrentOffset(p.offset);
+                chunk.setStatus(p.status);
+            }
+        }
+    }
+
+    /**
+     * Writes everything queued so far in one transaction. Called by the
+     * background thread and on close.
+     */
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            if (pendingChunks.isEmpty() && pendingSizes.isEmpty())
+                return;
+
+            Map<Integer, PendingChunk> chunks = new HashMap<>();
+            for (Integer id : pendingChunks.keySet()) {
+                PendingChunk p = pendingChunks.remove(id);
+                if (p != null)
+                    chunks.put(id, p);
+            }
+            Map<Integer, Long> sizes = new HashMap<>();
+            for (Integer id : pendingSizes.keySet()) {
+                Long delta = pendingSizes.remove(id);
+                if (delta != null)
+                    sizes.put(id, delta);
+            }
+
+            long start = System.nanoTime();
+            try {
+                // One transaction on the writer connection, held for the whole batch
+                connectionProvider.write(conn -> {
+                    Connection c = conn.getConnection();
+                    c.setAutoCommit(false);
+                    try {
+                        PreparedStatement chunkSt = conn.prepare(CHUNK_SQL);
+                        for (Map.Entry<Integer, PendingChunk> e : chunks.entrySet()) {
+                            chunkSt.setLong(1, e.getValue().offset);
+                            chunkSt.setInt(2, ChunkStatus.fromName(e.getValue().status).getCode());
+                            chunkSt.setInt(3, e.getKey());
+                            chunkSt.addBatch();
+                        }
+                        if (!chunks.isEmpty())
+                            chunkSt.executeBatch();
+
+                        PreparedStatement sizeSt = conn.prepare(SIZE_SQL);
+                        for (Map.Entry<Integer, Long> e : sizes.entrySet()) {
+                            sizeSt.setLong(1, e.getValue());
+                            sizeSt.setInt(2, e.getKey());
+                            sizeSt.addBatch();
+                        }
+                        if (!sizes.isEmpty())
+                            sizeSt.executeBatch();
+                        c.commit();
+                    } catch (SQLException e) {
+                        try {
+                            c.rollback();
+                        } catch (SQLException ignored) {
+                        }
+                        throw e;
+                    } finally {
+                        c.setAutoCommit(true);
+                    }
+                    return null;
+                });
+            } catch (SQLException e) {
+                requeue(chunks, sizes);
+                failedFlushes.incrementAndGet();
+                throw e;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            lastFlushNanos = elapsed;
+            if (elapsed > maxFlushNanos)
+                maxFlushNanos = elapsed;
+            totalFlushNanos.addAndGet(elapsed);
+            flushCount.incrementAndGet();
+            rowsWritten.addAndGet(chunks.size() + sizes.size());
+        }
+    }
+
+    // A failed batch goes back in without overwriting anything newer
+    private void requeue(Map<Integer, PendingChunk> chunks, Map<Integer, Long> sizes) {
+        chunks.forEach(pendingChunks::putIfAbsent);
+        sizes.forEach((id, delta) -> pendingSizes.merge(id, delta, Long::sum));
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Progress flush failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the background thread and writes whatever is still queued.
+     */
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    public int getQueueDepth() {
+        return pendingChunks.size() + pendingSizes.size();
+    }
+
+    public long getUpdatesReceived() {
+        return updatesReceived.get();
+    }
+
+    public long getUpdatesMerged() {
+        return updatesMerged.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos / 1_000_000.0;
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushCount.get();
+        return count == 0 ? 0 : totalFlushNanos.get() / 1_000_000.0 / count;
+    }
+}
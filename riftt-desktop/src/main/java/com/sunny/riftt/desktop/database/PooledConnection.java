@@ -0,0 +1,87 @@
+package com.sunny.riftt.desktop.database;
+
+import com.sunny.riftt.core.ILogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A JDBC connection together with its cache of prepared statements. Only one
+ * thread uses a pooled connection at a time, so the cache needs no locking.
+ * Statements handed out here must not be closed by the caller.
+ */
+public class PooledConnection {
+
+    private static final int MAX_CACHED_STATEMENTS = 32;
+
+    private final Connection connection;
+    private final ILogger logger;
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= MAX_CACHED_STATEMENTS)
+                return false;
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+
+    PooledConnection(Connection connection, ILogger logger) {
+        this.connection = connection;
+        this.logger = logger;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return cached(sql, sql, false);
+    }
+
+    public PreparedStatement prepareWithKeys(String sql) throws SQLException {
+        return cached("#keys " + sql, sql, true);
+    }
+
+    private PreparedStatement cached(String key, String sql, boolean generatedKeys) throws SQLException {
+        PreparedStatement st = statements.get(key);
+        if (st == null || st.isClosed()) {
+            st = generatedKeys
+                    ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(sql);
+            statements.put(key, st);
+        } else {
+            st.clearParameters();
+            st.clearBatch();
+        }
+        return st;
+    }
+
+    int getCachedStatementCount() {
+        return statements.size();
+    }
+
+    void close() {
+        for (PreparedStatement st : statements.values()) {
+            closeQuietly(st);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Closing database connection failed", e);
+        }
+    }
+
+    private static void closeQuietly(Statement st) {
+        try {
+            st.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.sunny.riftt.desktop.database;
+
+import com.sunny.riftt.core.ILogger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Upgrades the database schema in place. The current version lives in
+ * {@code PRAGMA user_version}; every migration above it runs once, in order,
+ * inside its own transaction. New schema changes go at the end of
+ * {@link #MIGRATIONS} with the next version number.
+ */
+public class SchemaMigrator {
+
+    interface Migration {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private static final class Step {
+        final int version;
+        final String description;
+        final Migration migration;
+
+        Step(int version, String description, Migration migration) {
+            this.version = version;
+            this.description = description;
+            this.migration = migration;
+        }
+    }
+
+    private static final List<Step> MIGRATIONS = new ArrayList<>();
+
+    private final ILogger logger;
+
+    public SchemaMigrator(ILogger logger) {
+        this.logger = logger;
+    }
+
+    static {
+        MIGRATIONS.add(new Step(1, "baseline schema", SchemaMigrator::baseline));
+        MIGRATIONS.add(new Step(2, "integer columns and status codes", SchemaMigrator::typedColumns));
+        MIGRATIONS.add(new Step(3, "archive table", SchemaMigrator::archiveTable));
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Brings the database on {@code conn} up to the latest version. Foreign keys
+     * are switched off while tables are rebuilt and checked before commit.
+     */
+    public void migrate(Connection conn) throws SQLException {
+        int current = userVersion(conn);
+        for (Step step : MIGRATIONS) {
+            if (step.version <= current)
+                continue;
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA foreign_keys = OFF");
+                conn.setAutoCommit(false);
+                try {
+                    step.migration.apply(stmt);
+                    try (ResultSet rs = stmt.executeQuery("PRAGMA foreign_key_check")) {
+                        if (rs.next())
+                            throw new SQLException("Foreign key violation in " + rs.getString(1)
+                                    + " after migration " + step.version);
+                    }
+                    stmt.execute("PRAGMA user_version = " + step.version);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + step.version + " (" + step.description + ") failed: " + e.getMessage(), e);
+                } finally {
+                    conn.setAutoCommit(true);
+                    stmt.execute("PRAGMA foreign_keys = ON");
+                }
+            }
+            logger.log("Upgraded schema to version " + step.version + ": " + step.description);
+        }
+    }
+
+    private static int userVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // The unversioned schema earlier releases created, so old databases line up with new ones
+    private static void baseline(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS downloads (\n" +
+                "    id INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
+                "    filename VARCHAR(255),\n" +
+                "    url TEXT NOT NULL,\n" +
+                "    file_size LONG,\n" +
+                "    downloaded_size LONG DEFAULT 0,\n" +
+                "    status VARCHAR(20),\n" +
+                "    download_path TEXT,\n" +
+                "    start_time TIMESTAMP,\n" +
+                "    end_time TIMESTAMP,\n" +
+                "    thread_count INTEGER DEFAULT 1\n" +
+                ")");
+        stmt.execute("CREATE TABLE IF NOT EXISTS download_chunks (\n" +
+                "    id INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
+                "    download_id INTEGER,\n" +
+                "    start_byte LONG,\n" +
+                "    end_byte LONG,\n" +
+                "    current_offset LONG,\n" +
+                "    status VARCHAR(20),\n" +
+                "    FOREIGN KEY(download_id) REFERENCES downloads(id) ON DELETE CASCADE\n" +
+                ")");
+        stmt.execute("CREATE TABLE IF NOT EXISTS download_blocks (\n" +
+                "    download_id INTEGER PRIMARY KEY,\n" +
+                "    block_size INTEGER,\n" +
+                "    bitmap BLOB,\n" +
+                "    FOREIGN KEY(download_id) REFERENCES downloads(id) ON DELETE CASCADE\n" +
+                ")");
+
+        // Earlier releases ran with foreign keys off, so deletes left these behind
+        stmt.execute("DELETE FROM download_chunks WHERE download_id NOT IN (SELECT id FROM downloads)");
+        stmt.execute("DELETE FROM download_blocks WHERE download_id NOT IN (SELECT id FROM downloads)");
+    }
+
+    /**
+     * Rebuilds downloads and download_chunks with INTEGER affinity and status
+     * codes (see DownloadStatus and ChunkStatus).
+     */
+    private static void typedColumns(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE downloads_v2 (\n" +
+                "    id INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
+                "    filename TEXT,\n" +
+                "    url TEXT NOT NULL,\n" +
+                "    file_size INTEGER NOT NULL DEFAULT 0,\n" +
+                "    downloaded_size INTEGER NOT NULL DEFAULT 0,\n" +
+                "    status INTEGER NOT NULL DEFAULT 0,\n" +
+                "    download_path TEXT,\n" +
+                "    start_time INTEGER,\n" +
+                "    end_time INTEGER,\n" +
+                "    thread_count INTEGER NOT NULL DEFAULT 1\n" +
+                ")");
+        stmt.execute("INSERT INTO downloads_v2 (id, filename, url, file_size, downloaded_size, status,\n" +
+                "        download_path, start_time, end_time, thread_count)\n" +
+                "    SELECT id, filename, url, COALESCE(file_size, 0), COALESCE(downloaded_size, 0),\n" +
+                "        CASE status WHEN 'DOWNLOADING' THEN 1 WHEN 'PAUSED' THEN 2 WHEN 'COMPLETED' THEN 3\n" +
+                "            WHEN 'FAILED' THEN 4 WHEN 'CANCELED' THEN 5 ELSE 0 END,\n" +
+                "        download_path, start_time, end_time, COALESCE(thread_count, 1)\n" +
+                "    FROM downloads");
+        stmt.execute("DROP TABLE downloads");
+        stmt.execute("ALTER TABLE downloads_v2 RENAME TO downloads");
+
+        stmt.execute("CREATE TABLE download_chunks_v2 (\n" +
+                "    id INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
+                "    download_id INTEGER NOT NULL,\n" +
+                "    start_byte INTEGER NOT NULL,\n" +
+                "    end_byte INTEGER NOT NULL,\n" +
+                "    current_offset INTEGER NOT NULL,\n" +
+                "    status INTEGER NOT NULL DEFAULT 0,\n" +
+                "    FOREIGN KEY(download_id) REFERENCES downloads(id) ON DELETE CASCADE\n" +
+                ")");
+        stmt.execute("INSERT INTO download_chunks_v2 (id, download_id, start_byte, end_byte, current_offset, status)\n" +
+                "    SELECT id, download_id, start_byte, end_byte, COALESCE(current_offset, start_byte),\n" +
+                "        CASE status WHEN 'DOWNLOADING' THEN 1 WHEN 'PAUSED' THEN 2 WHEN 'COMPLETED' THEN 3\n" +
+                "            WHEN 'FAILED' THEN 4 ELSE 0 END\n" +
+                "    FROM download_chunks");
+        stmt.execute("DROP TABLE download_chunks");
+        stmt.execute("ALTER TABLE download_chunks_v2 RENAME TO download_chunks");
+
+        // Chunk lookups are by download and ordered by start byte; the list filters by status
+        stmt.execute("CREATE INDEX idx_chunks_download ON download_chunks(download_id, start_byte)");
+        stmt.execute("CREATE INDEX idx_downloads_status ON downloads(status, id)");
+    }
+
+    // Old completed downloads are moved here with only the fields history needs
+    private static void archiveTable(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE downloads_archive (\n" +
+                "    id INTEGER PRIMARY KEY,\n" +
+                "    filename TEXT,\n" +
+                "    url TEXT NOT NULL,\n" +
+                "    file_size INTEGER NOT NULL DEFAULT 0,\n" +
+                "    download_path TEXT,\n" +
+                "    completed_at INTEGER\n" +
+                ")");
+        stmt.execute("CREATE INDEX idx_archive_completed ON downloads_archive(completed_at)");
+    }
+}
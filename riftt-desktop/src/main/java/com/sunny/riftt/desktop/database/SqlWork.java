@@ -0,0 +1,12 @@
+package com.sunny.riftt.desktop.database;
+
+import java.sql.SQLException;
+
+/**
+ * A unit of database work run on a pooled connection. The connection is only
+ * valid for the duration of the call.
+ */
+@FunctionalInterface
+public interface SqlWork<T> {
+    T run(PooledConnection conn) throws SQLException;
+}
@@ -2,6 +2,7 @@ package com.sunny.riftt.desktop.repository;
 
 import com.sunny.riftt.core.IChunkRepository;
 import com.sunny.riftt.desktop.database.DownloadChunkDAO;
+import com.sunny.riftt.desktop.database.PersistenceWriter;
 import com.sunny.riftt.model.DownloadChunk;
 
 import java.util.List;
@@ -11,6 +12,7 @@ import com.sunny.riftt.desktop.database.DatabaseManager;
 public class JdbcChunkRepository implements IChunkRepository {
 
     private final DownloadChunkDAO dao = new DownloadChunkDAO(DatabaseManager.getInstance());
+    private final PersistenceWriter writer = DatabaseManager.getInstance().getPersistenceWriter();
 
     @Override
     public void createChunks(List<DownloadChunk> chunks) {
@@ -19,11 +21,15 @@ public class JdbcChunkRepository implements IChunkRepository {
 
     @Override
     public List<DownloadChunk> getChunksForDownload(int downloadId) {
-        return dao.getChunksForDownload(downloadId);
+        List<DownloadChunk> chunks = dao.getChunksForDownload(downloadId);
+        // Progress still queued in the writer is newer than the rows
+        writer.overlayPending(chunks);
+        return chunks;
     }
 
     @Override
     public void updateChunkProgress(int chunkId, long currentOffset, String status) {
-        dao.updateChunkProgress(chunkId, currentOffset, status);
+        // Hot path: queued and merged, written by the background writer
+        writer.enqueueChunkProgress(chunkId, currentOffset, status);
     }
 }
@@ -1,10 +1,13 @@
 package com.sunny.riftt.desktop.repository;
 
 import com.sunny.riftt.core.IDownloadRepository;
+import com.sunny.riftt.core.ILogger;
 import com.sunny.riftt.desktop.database.DownloadDAO;
+import com.sunny.riftt.desktop.database.PersistenceWriter;
 import com.sunny.riftt.model.Download;
 
 import com.sunny.riftt.model.DownloadStatus;
+import com.sunny.riftt.model.DownloadSummary;
 import java.sql.Timestamp;
 import java.util.List;
 
@@ -13,6 +16,8 @@ import com.sunny.riftt.desktop.database.DatabaseManager;
 public class JdbcDownloadRepository implements IDownloadRepository {
 
     private final DownloadDAO dao = new DownloadDAO(DatabaseManager.getInstance());
+    private final PersistenceWriter writer = DatabaseManager.getInstance().getPersistenceWriter();
+    private final ILogger logger = DatabaseManager.getLogger();
 
     @Override
     public int insertDownload(Download download) {
@@ -21,6 +26,8 @@ public class JdbcDownloadRepository implements IDownloadRepository {
 
     @Override
     public void updateDownload(Download download) {
+        // The absolute size supersedes any queued delta
+        writer.discardDownloadedSize(download.getId());
         dao.updateDownload(download);
     }
 
@@ -39,18 +46,36 @@ public class JdbcDownloadRepository implements IDownloadRepository {
         try {
             return dao.getDownloadById(id);
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Loading download " + id + " failed", e);
             return null;
         }
     }
 
     @Override
     public List<Download> getAllDownloads() {
+        // Sizes may trail the writer by one flush interval
         return dao.getAllDownloads();
     }
 
+    @Override
+    public List<DownloadSummary> getDownloadSummaries(DownloadStatus status, int offset, int limit) {
+        return dao.getDownloadSummaries(status, offset, limit);
+    }
+
+    @Override
+    public int countDownloads(DownloadStatus status) {
+        return dao.countDownloads(status);
+    }
+
+    @Override
+    public List<DownloadSummary> searchArchive(String query, int offset, int limit) {
+        return dao.searchArchive(query, offset, limit);
+    }
+
     @Override
     public boolean deleteDownload(int id) {
+        // Queued updates for the row become no-ops once it is gone
+        writer.discardDownloadedSize(id);
         return dao.deleteDownload(id);
     }
 
@@ -61,6 +86,16 @@ public class JdbcDownloadRepository implements IDownloadRepository {
 
     @Override
     public void updateDownloadedSize(int downloadId, long bytesToAdd) {
-        dao.updateDownloadedSize(downloadId, bytesToAdd);
+        writer.enqueueDownloadedSize(downloadId, bytesToAdd);
+    }
+
+    @Override
+    public void saveBlockBitmap(int downloadId, int blockSize, byte[] bitmap) {
+        dao.saveBlockBitmap(downloadId, blockSize, bitmap);
+    }
+
+    @Override
+    public byte[] getBlockBitmap(int downloadId, int blockSize) {
+        return dao.getBlockBitmap(downloadId, blockSize);
     }
 }
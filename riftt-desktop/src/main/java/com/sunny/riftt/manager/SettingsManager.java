@@ -1,5 +1,7 @@
 package com.sunny.riftt.manager;
 
+import com.sunny.riftt.storage.DurabilityMode;
+
 import java.util.prefs.Preferences;
 
 public class SettingsManager {
@@ -12,12 +14,16 @@ public class SettingsManager {
     private static final String KEY_THREADS_PER_DOWNLOAD = "threads_per_download";
     private static final String KEY_DEFAULT_PATH = "default_download_path";
     private static final String KEY_TIMEOUT = "connection_timeout";
+    private static final String KEY_DURABILITY = "durability_mode";
+    private static final String KEY_ARCHIVE_DAYS = "archive_after_days";
 
     // Defaults
     private static final int DIS_MAX_CONCURRENT = 3;
     private static final int DEF_THREADS = 16;
     private static final String DEF_PATH = System.getProperty("user.home") + java.io.File.separator + "Downloads";
     private static final int DEF_TIMEOUT = 10000;
+    private static final DurabilityMode DEF_DURABILITY = DurabilityMode.PERIODIC;
+    private static final int DEF_ARCHIVE_DAYS = 30; // 0 keeps everything in the main list
 
     private SettingsManager() {
         prefs = Preferences.userNodeForPackage(SettingsManager.class);
@@ -63,4 +69,28 @@ public class SettingsManager {
     public void setConnectionTimeout(int value) {
         prefs.putInt(KEY_TIMEOUT, value);
     }
+
+    public DurabilityMode getDurabilityMode() {
+        try {
+            return DurabilityMode.valueOf(prefs.get(KEY_DURABILITY, DEF_DURABILITY.name()));
+        } catch (IllegalArgumentException e) {
+            return DEF_DURABILITY;
+        }
+    }
+
+    public void setDurabilityMode(DurabilityMode mode) {
+        if (mode != null) {
+            prefs.put(KEY_DURABILITY, mode.name());
+        }
+    }
+
+    public int getArchiveAfterDays() {
+        return prefs.getInt(KEY_ARCHIVE_DAYS, DEF_ARCHIVE_DAYS);
+    }
+
+    public void setArchiveAfterDays(int days) {
+        if (days >= 0) {
+            prefs.putInt(KEY_ARCHIVE_DAYS, days);
+        }
+    }
 }
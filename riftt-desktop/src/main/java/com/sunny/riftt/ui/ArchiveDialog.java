@@ -0,0 +1,109 @@
+package com.sunny.riftt.ui;
+
+import com.sunny.riftt.downloader.DownloadManager;
+import com.sunny.riftt.model.DownloadSummary;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Searches archived downloads. Nothing is loaded until a search runs, and
+ * results come a page at a time.
+ */
+public class ArchiveDialog extends JDialog {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final DownloadManager downloadManager;
+    private final JTextField searchField;
+    private final DefaultTableModel tableModel;
+    private final JButton moreButton;
+    private String currentQuery = "";
+
+    public ArchiveDialog(Frame owner, DownloadManager manager) {
+        super(owner, "Download History", true);
+        this.downloadManager = manager;
+
+        setLayout(new BorderLayout(5, 5));
+        setSize(600, 420);
+        setLocationRelativeTo(owner);
+
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        searchField = new JTextField();
+        JButton searchButton = new JButton("Search");
+        searchButton.addActionListener(e -> search());
+        searchField.addActionListener(e -> search());
+        searchPanel.add(new JLabel("Filename:"), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        searchPanel.add(searchButton, BorderLayout.EAST);
+        add(searchPanel, BorderLayout.NORTH);
+
+        tableModel = new DefaultTableModel(new Object[] { "Name", "Size" }, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(tableModel);
+        table.getColumnModel().getColumn(1).setMaxWidth(120);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel footer = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        moreButton = new JButton("More");
+        moreButton.setEnabled(false);
+        moreButton.addActionListener(e -> loadPage());
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        footer.add(moreButton);
+        footer.add(closeButton);
+        add(footer, BorderLayout.SOUTH);
+    }
+
+    private void search() {
+        currentQuery = searchField.getText().trim();
+        tableModel.setRowCount(0);
+        loadPage();
+    }
+
+    private void loadPage() {
+        int offset = tableModel.getRowCount();
+        String query = currentQuery;
+        moreButton.setEnabled(false);
+        new SwingWorker<List<DownloadSummary>, Void>() {
+            @Override
+            protected List<DownloadSummary> doInBackground() {
+                return downloadManager.searchArchive(query, offset, PAGE_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<DownloadSummary> page = get();
+                    // A newer search replaced the results while this page loaded
+                    if (!query.equals(currentQuery) || tableModel.getRowCount() != offset)
+                        return;
+                    for (DownloadSummary d : page) {
+                        tableModel.addRow(new Object[] { d.getFilename(), formatSize(d.getFileSize()) });
+                    }
+                    moreButton.setEnabled(page.size() == PAGE_SIZE);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(ArchiveDialog.this, "Error: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private String formatSize(long bytes) {
+        if (bytes <= 0)
+            return "Unknown";
+        if (bytes < 1024)
+            return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        String pre = "KMGTPE".charAt(exp - 1) + "";
+        return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
+    }
+}
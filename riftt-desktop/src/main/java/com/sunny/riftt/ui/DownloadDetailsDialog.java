@@ -1,18 +1,23 @@
 package com.sunny.riftt.ui;
 
 import com.sunny.riftt.downloader.DownloadManager;
+import com.sunny.riftt.model.ChunkSnapshot;
 import com.sunny.riftt.model.DownloadChunk;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 
 public class DownloadDetailsDialog extends JDialog {
 
     private final DownloadManager downloadManager;
     private final int downloadId;
+    private final JLabel title;
     private final JPanel gridPanel;
     private final Timer refreshTimer;
+    // Saved chunk state is read once after the download stops, not on every tick
+    private boolean showingSaved;
 
     public DownloadDetailsDialog(Frame owner, DownloadManager manager, int downloadId, String filename) {
         super(owner, "Details: " + filename, true);
@@ -24,18 +29,18 @@ public class DownloadDetailsDialog extends JDialog {
         setLocationRelativeTo(owner);
 
         // Header
-        JLabel title = new JLabel("Thread Progress (16 Threads)", SwingConstants.CENTER);
+        title = new JLabel("Segments", SwingConstants.CENTER);
         title.setFont(new Font("Segoe UI", Font.BOLD, 16));
         title.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         add(title, BorderLayout.NORTH);
 
-        // Grid Panel
-        gridPanel = new JPanel(new GridLayout(4, 4, 10, 10));
+        // Grid Panel; as many rows as the download has segments
+        gridPanel = new JPanel(new GridLayout(0, 4, 10, 10));
         gridPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        add(gridPanel, BorderLayout.CENTER);
-
-        // Initial Layout
-        initGrid();
+        JScrollPane scrollPane = new JScrollPane(gridPanel);
+        scrollPane.setBorder(null);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        add(scrollPane, BorderLayout.CENTER);
 
         // Footer
         JButton closeButton = new JButton("Close");
@@ -46,52 +51,85 @@ public class DownloadDetailsDialog extends JDialog {
 
         // Refresh Timer (100ms)
         refreshTimer = new Timer(100, e -> updateProgress());
+        updateProgress();
+    }
+
+    private void updateProgress() {
+        List<ChunkSnapshot> chunks = downloadManager.getChunkSnapshots(downloadId);
+        if (chunks.isEmpty()) {
+            if (showingSaved)
+                return;
+            showingSaved = true;
+            chunks = new ArrayList<>();
+            for (DownloadChunk chunk : downloadManager.getChunks(downloadId)) {
+                chunks.add(ChunkSnapshot.of(chunk));
+            }
+        } else {
+            showingSaved = false;
+        }
+
+        if (gridPanel.getComponentCount() != chunks.size()) {
+            rebuildGrid(chunks.size());
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            render((JProgressBar) gridPanel.getComponent(i), chunks.get(i));
+        }
     }
 
-    private void initGrid() {
-        // Create placeholders. We'll update them dynamically.
-        for (int i = 0; i < 16; i++) {
+    private void rebuildGrid(int count) {
+        gridPanel.removeAll();
+        for (int i = 0; i < count; i++) {
             JProgressBar pb = new JProgressBar(0, 100);
             pb.setStringPainted(true);
-            pb.setString("Connecting...");
             gridPanel.add(pb);
         }
+        title.setText("Segment Progress (" + count + (count == 1 ? " Segment)" : " Segments)"));
+        gridPanel.revalidate();
+        gridPanel.repaint();
     }
 
-    private void updateProgress() {
-        List<DownloadChunk> chunks = downloadManager.getChunks(downloadId);
-        Component[] comps = gridPanel.getComponents();
-
-        // If chunks < 16 (e.g. single thread), handle gracefully
-        for (int i = 0; i < comps.length; i++) {
-            if (comps[i] instanceof JProgressBar) {
-                JProgressBar pb = (JProgressBar) comps[i];
-                if (i < chunks.size()) {
-                    DownloadChunk chunk = chunks.get(i);
-                    long total = chunk.getEndByte() - chunk.getStartByte() + 1;
-                    long current = chunk.getCurrentOffset() - chunk.getStartByte(); // Approx
-
-                    if (current > total && total != 0) // Cap only if total is known/valid
-                        current = total;
-                    if (current < 0)
-                        current = 0;
-
-                    if (total > 0) {
-                        int percent = (int) ((current * 100) / total);
-                        pb.setValue(percent);
-                        pb.setString(percent + "%");
-                    } else {
-                        // Unknown size
-                        pb.setIndeterminate(true);
-                        pb.setString("Downloading...");
-                        pb.setValue(0);
-                    }
-                } else {
-                    pb.setValue(0);
-                    pb.setString("Inactive");
-                }
-            }
+    private void render(JProgressBar pb, ChunkSnapshot chunk) {
+        double percent = chunk.getPercent();
+        String text;
+        switch (chunk.getStatus()) {
+            case DOWNLOADING:
+                text = formatSize((long) chunk.getBytesPerSecond()) + "/s";
+                break;
+            case COMPLETED:
+                text = "Done";
+                percent = 100;
+                break;
+            case PAUSED:
+                text = "Paused";
+                break;
+            case FAILED:
+                text = "Failed";
+                break;
+            default:
+                text = "Waiting";
+                break;
         }
+        boolean unknown = percent < 0;
+        if (pb.isIndeterminate() != unknown)
+            pb.setIndeterminate(unknown);
+        if (!unknown) {
+            pb.setValue((int) percent);
+            text = (int) percent + "% - " + text;
+        } else {
+            text = formatSize(chunk.getOffset() - chunk.getStartByte()) + " - " + text;
+        }
+        if (!text.equals(pb.getString()))
+            pb.setString(text);
+    }
+
+    private String formatSize(long bytes) {
+        if (bytes <= 0)
+            return "0 B";
+        if (bytes < 1024)
+            return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        String pre = "KMGTPE".charAt(exp - 1) + "";
+        return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
     }
 
     @Override
@@ -103,4 +141,10 @@ public class DownloadDetailsDialog extends JDialog {
         }
         super.setVisible(b);
     }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
 }
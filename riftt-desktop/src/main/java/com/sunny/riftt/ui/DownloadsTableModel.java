@@ -1,20 +1,68 @@
 package com.sunny.riftt.ui;
 
-import com.sunny.riftt.model.Download;
+import com.sunny.riftt.downloader.DownloadManager;
+import com.sunny.riftt.model.DownloadStatus;
+import com.sunny.riftt.model.DownloadSummary;
 
+import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Download list backed by paged repository queries, newest first. Only the
+ * row count is known up front; pages are fetched in the background when the
+ * table first asks for one of their rows, and only the most recently used
+ * pages are kept, so memory does not grow with the size of the history. A
+ * page that failed to load is not asked for again until
+ * {@link #PAGE_RETRY_MS} has passed or the list is refreshed, so repaints do
+ * not turn a failing database into a query storm.
+ * <p>
+ * Must only be used on the event dispatch thread.
+ */
 public class DownloadsTableModel extends AbstractTableModel {
 
-    private final List<Download> downloadList = new ArrayList<>();
-    // 0: Filename, 1: Progress, 2: Size, 3: Status
-    private final String[] columnNames = { "Filename", "Progress", "Size", "Status" };
+    public static final int COLUMN_NAME = 0;
+    public static final int COLUMN_PROGRESS = 1;
+    public static final int COLUMN_SIZE = 2;
+    public static final int COLUMN_STATUS = 3;
+    public static final int COLUMN_SPEED = 4;
+
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 8;
+    private static final long PAGE_RETRY_MS = 5000L;
+
+    private final String[] columnNames = { "Filename", "Progress", "Size", "Status", "Speed" };
+    private final DownloadManager downloadManager;
+
+    // Speed and time left of running downloads, by id
+    private final Map<Integer, String> speeds = new HashMap<>();
+
+    private int rowCount;
+    // Bumped whenever rows shift, so pages loaded for the old layout are dropped
+    private int generation;
+    private final Set<Integer> loading = new HashSet<>();
+    // Pages whose last load failed, and when they may be tried again
+    private final Map<Integer, Long> retryAt = new HashMap<>();
+    private final Map<Integer, DownloadSummary[]> pages = new LinkedHashMap<Integer, DownloadSummary[]>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, DownloadSummary[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    public DownloadsTableModel(DownloadManager downloadManager) {
+        this.downloadManager = downloadManager;
+    }
 
     @Override
     public int getRowCount() {
-        return downloadList.size();
+        return rowCount;
     }
 
     @Override
@@ -29,16 +77,20 @@ public class DownloadsTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Download download = downloadList.get(rowIndex);
+        DownloadSummary download = getDownloadAt(rowIndex);
+        if (download == null)
+            return columnIndex == COLUMN_NAME ? "Loading..." : null;
         switch (columnIndex) {
-            case 0:
+            case COLUMN_NAME:
                 return download.getFilename();
-            case 1:
+            case COLUMN_PROGRESS:
                 return getProgressValue(download);
-            case 2:
-                return formatSize(download.getFileSize());
-            case 3:
+            case COLUMN_SIZE:
+                return formatSize(download.getDownloadedSize()) + " / " + formatSize(download.getFileSize());
+            case COLUMN_STATUS:
                 return download.getStatus();
+            case COLUMN_SPEED:
+                return speeds.getOrDefault(download.getId(), "");
             default:
                 return null;
         }
@@ -47,87 +99,198 @@ public class DownloadsTableModel extends AbstractTableModel {
     // Support for JProgressBar renderer
     @Override
     public Class<?> getColumnClass(int columnIndex) {
-        if (columnIndex == 1) {
+        if (columnIndex == COLUMN_PROGRESS) {
             return Double.class; // Progress
         }
         return String.class;
     }
 
-    public void addDownload(Download download) {
-        downloadList.add(download);
-        fireTableRowsInserted(downloadList.size() - 1, downloadList.size() - 1);
+    /**
+     * Returns the download at the row, or null while its page is loading or
+     * could not be loaded.
+     */
+    public DownloadSummary getDownloadAt(int row) {
+        int page = row / PAGE_SIZE;
+        DownloadSummary[] rows = pages.get(page);
+        if (rows == null) {
+            loadPage(page);
+            return null;
+        }
+        int index = row % PAGE_SIZE;
+        return index < rows.length ? rows[index] : null;
     }
 
-    public void removeDownload(int id) {
-        for (int i = 0; i < downloadList.size(); i++) {
-            if (downloadList.get(i).getId() == id) {
-                downloadList.remove(i);
-                fireTableRowsDeleted(i, i);
-                return;
+    /**
+     * Drops every loaded page and re-reads the row count.
+     */
+    public void refresh() {
+        int gen = ++generation;
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return downloadManager.countDownloads(null);
             }
-        }
+
+            @Override
+            protected void done() {
+                try {
+                    int count = get();
+                    if (gen != generation)
+                        return;
+                    invalidate();
+                    rowCount = count;
+                    fireTableDataChanged();
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }.execute();
     }
 
-    public void clearAll() {
-        int size = downloadList.size();
-        if (size > 0) {
-            downloadList.clear();
-            fireTableDataChanged();
-        }
+    /**
+     * A new download was added; it takes the top row.
+     */
+    public void downloadAdded() {
+        invalidate();
+        rowCount++;
+        fireTableRowsInserted(0, 0);
     }
 
-    public void updateDownload(Download download) {
-        for (int i = 0; i < downloadList.size(); i++) {
-            if (downloadList.get(i).getId() == download.getId()) {
-                downloadList.set(i, download);
-                fireTableRowsUpdated(i, i);
-                return;
-            }
+    public void removeDownload(int id) {
+        int row = indexOf(id);
+        if (row < 0) {
+            refresh();
+            return;
         }
+        speeds.remove(id);
+        invalidate();
+        rowCount--;
+        fireTableRowsDeleted(row, row);
+    }
+
+    public void clearAll() {
+        speeds.clear();
+        invalidate();
+        rowCount = 0;
+        fireTableDataChanged();
     }
 
     public void updateProgress(int id, long downloadedSize, long totalSize) {
-        for (int i = 0; i < downloadList.size(); i++) {
-            if (downloadList.get(i).getId() == id) {
-                downloadList.get(i).setDownloadedSize(downloadedSize);
-                downloadList.get(i).setFileSize(totalSize);
-
-                // Update Progress(1), Size(2)
-                fireTableCellUpdated(i, 1);
-                fireTableCellUpdated(i, 2);
-                return;
-            }
+        int row = indexOf(id);
+        if (row < 0)
+            return;
+        DownloadSummary d = getDownloadAt(row);
+        if (d.getDownloadedSize() == downloadedSize && d.getFileSize() == totalSize)
+            return;
+        replace(row, new DownloadSummary(id, d.getFilename(), d.getStatus(), totalSize, downloadedSize));
+        fireTableCellUpdated(row, COLUMN_PROGRESS);
+        fireTableCellUpdated(row, COLUMN_SIZE);
+    }
+
+    public void updateStatus(int id, DownloadStatus status) {
+        boolean hadSpeed = status != DownloadStatus.DOWNLOADING && speeds.remove(id) != null;
+        int row = indexOf(id);
+        if (row < 0)
+            return;
+        DownloadSummary d = getDownloadAt(row);
+        if (d.getStatus() == status) {
+            if (hadSpeed)
+                fireTableCellUpdated(row, COLUMN_SPEED);
+            return;
         }
+        // The last progress sample may predate completion
+        long downloaded = status == DownloadStatus.COMPLETED && d.getFileSize() > 0 ? d.getFileSize()
+                : d.getDownloadedSize();
+        replace(row, new DownloadSummary(id, d.getFilename(), status, d.getFileSize(), downloaded));
+        if (downloaded != d.getDownloadedSize() || hadSpeed)
+            fireTableRowsUpdated(row, row);
+        else
+            fireTableCellUpdated(row, COLUMN_STATUS);
+    }
+
+    public void updateSpeed(int id, double bytesPerSecond, long etaSeconds) {
+        String text = formatSize((long) bytesPerSecond) + "/s";
+        if (etaSeconds >= 0)
+            text += ", " + formatDuration(etaSeconds) + " left";
+        if (text.equals(speeds.put(id, text)))
+            return;
+        int row = indexOf(id);
+        if (row >= 0)
+            fireTableCellUpdated(row, COLUMN_SPEED);
     }
 
-    public void updateStatus(int id, com.sunny.riftt.model.DownloadStatus status) {
-        for (int i = 0; i < downloadList.size(); i++) {
-            if (downloadList.get(i).getId() == id) {
-                downloadList.get(i).setStatus(status);
-                // Update Status column (3)
-                fireTableCellUpdated(i, 3);
-                return;
+    // Rows that are not loaded are skipped; they come fresh from the database when needed
+    private int indexOf(int id) {
+        for (Map.Entry<Integer, DownloadSummary[]> e : pages.entrySet()) {
+            DownloadSummary[] rows = e.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i].getId() == id)
+                    return e.getKey() * PAGE_SIZE + i;
             }
         }
+        return -1;
     }
 
-    public Download getDownloadAt(int row) {
-        return downloadList.get(row);
+    private void replace(int row, DownloadSummary summary) {
+        pages.get(row / PAGE_SIZE)[row % PAGE_SIZE] = summary;
     }
 
-    public void setDownloads(List<Download> downloads) {
-        this.downloadList.clear();
-        this.downloadList.addAll(downloads);
-        fireTableDataChanged();
+    private void invalidate() {
+        generation++;
+        pages.clear();
+        loading.clear();
+        retryAt.clear();
+    }
+
+    private void loadPage(int page) {
+        Long retry = retryAt.get(page);
+        if (retry != null && System.currentTimeMillis() < retry)
+            return;
+        if (!loading.add(page))
+            return;
+        int gen = generation;
+        new SwingWorker<List<DownloadSummary>, Void>() {
+            @Override
+            protected List<DownloadSummary> doInBackground() {
+                return downloadManager.getDownloadSummaries(null, page * PAGE_SIZE, PAGE_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                if (gen != generation)
+                    return;
+                loading.remove(page);
+                try {
+                    List<DownloadSummary> rows = get();
+                    retryAt.remove(page);
+                    pages.put(page, rows.toArray(new DownloadSummary[0]));
+                    int first = page * PAGE_SIZE;
+                    int last = Math.min(rowCount, first + rows.size()) - 1;
+                    if (last >= first)
+                        fireTableRowsUpdated(first, last);
+                } catch (Exception ex) {
+                    retryAt.put(page, System.currentTimeMillis() + PAGE_RETRY_MS);
+                    ex.printStackTrace();
+                }
+            }
+        }.execute();
     }
 
-    private double getProgressValue(Download d) {
+    private Double getProgressValue(DownloadSummary d) {
         if (d.getFileSize() <= 0)
-            return 0;
+            return null;
         return (double) d.getDownloadedSize() / d.getFileSize() * 100;
     }
 
+    private String formatDuration(long seconds) {
+        if (seconds >= 3600)
+            return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
     private String formatSize(long bytes) {
+        if (bytes <= 0)
+            return bytes == 0 ? "0 B" : "Unknown";
         if (bytes < 1024)
             return bytes + " B";
         int exp = (int) (Math.log(bytes) / Math.log(1024));
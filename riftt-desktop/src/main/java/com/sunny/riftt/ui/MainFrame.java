@@ -3,7 +3,9 @@ package com.sunny.riftt.ui;
 import com.sunny.riftt.downloader.DownloadCallback;
 import com.sunny.riftt.downloader.DownloadManager;
 import com.sunny.riftt.model.Download;
+import com.sunny.riftt.model.DownloadSnapshot;
 import com.sunny.riftt.model.DownloadStatus;
+import com.sunny.riftt.model.DownloadSummary;
 import com.sunny.riftt.util.FilenameUtils;
 
 import javax.swing.*;
@@ -12,16 +14,25 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MainFrame extends JFrame {
 
     private final DownloadManager downloadManager;
-    private final Map<Integer, DownloadCard> cardMap = new HashMap<>();
-
-    private JPanel listPanel;
+    private final DownloadsTableModel tableModel;
+
+    // Rows are refreshed on a fixed frame rate (about 30 fps), never once per event
+    private static final int REFRESH_INTERVAL_MS = 33;
+    // The timer stops after this many frames with nothing running; download events start it again
+    private static final int IDLE_FRAMES_BEFORE_STOP = 30;
+    // Latest status per download since the last frame, written by the event thread
+    private final Map<Integer, DownloadStatus> pendingStatus = new ConcurrentHashMap<>();
+    private final Timer refreshTimer;
+    private int idleFrames;
+
+    private JTable downloadTable;
+    private JLabel totalSpeedLabel;
     private Integer selectedDownloadId = null;
 
     // Toolbar Buttons
@@ -34,9 +45,15 @@ public class MainFrame extends JFrame {
 
     public MainFrame(DownloadManager manager) {
         this.downloadManager = manager;
+        this.tableModel = new DownloadsTableModel(manager);
         initLookAndFeel();
         initUI();
+        // Created before the listener, which may start it
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refreshRows());
+        // One listener for every download; events for rows not loaded yet are ignored
+        downloadManager.addListener(createCallback());
         loadExistingDownloads();
+        refreshTimer.start();
     }
 
     private void initLookAndFeel() {
@@ -100,23 +117,47 @@ public class MainFrame extends JFrame {
         toolBar.add(Box.createHorizontalGlue()); // Right align settings
         JButton settingsButton = createStyledButton("Settings", new Color(200, 200, 200));
         settingsButton.setForeground(Color.BLACK);
+        JButton historyButton = createStyledButton("History", new Color(200, 200, 200));
+        historyButton.setForeground(Color.BLACK);
+        historyButton.addActionListener(e -> new ArchiveDialog(this, downloadManager).setVisible(true));
+        toolBar.add(historyButton);
+        toolBar.add(Box.createHorizontalStrut(5));
         settingsButton.addActionListener(e -> new SettingsDialog(this).setVisible(true));
         toolBar.add(settingsButton);
 
         add(toolBar, BorderLayout.NORTH);
 
-        // --- List View (Cards) ---
-        listPanel = new JPanel();
-        listPanel.setLayout(new BoxLayout(listPanel, BoxLayout.Y_AXIS));
-        listPanel.setBackground(new Color(245, 245, 245));
-
-        // Filler to push items to top
-        listPanel.add(Box.createVerticalGlue());
+        // --- List View ---
+        // Rows are rendered, not built as components, and loaded a page at a time
+        downloadTable = new JTable(tableModel);
+        downloadTable.setRowHeight(28);
+        downloadTable.setShowVerticalLines(false);
+        downloadTable.setFillsViewportHeight(true);
+        downloadTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        downloadTable.getTableHeader().setReorderingAllowed(false);
+        downloadTable.getColumnModel().getColumn(DownloadsTableModel.COLUMN_NAME).setPreferredWidth(420);
+        downloadTable.getColumnModel().getColumn(DownloadsTableModel.COLUMN_PROGRESS)
+                .setCellRenderer(new ProgressBarRenderer());
+        downloadTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting())
+                selectDownload(downloadTable.getSelectedRow());
+        });
+        downloadTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() != 2)
+                    return;
+                DownloadSummary download = tableModel.getDownloadAt(downloadTable.rowAtPoint(e.getPoint()));
+                if (download != null) {
+                    DownloadDetailsDialog dialog = new DownloadDetailsDialog(MainFrame.this, downloadManager,
+                            download.getId(), download.getFilename());
+                    dialog.setVisible(true);
+                }
+            }
+        });
 
-        JScrollPane scrollPane = new JScrollPane(listPanel);
+        JScrollPane scrollPane = new JScrollPane(downloadTable);
         scrollPane.setBorder(null);
-        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
-        scrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.getViewport().setBackground(new Color(245, 245, 245));
 
         add(scrollPane, BorderLayout.CENTER);
@@ -127,6 +168,9 @@ public class MainFrame extends JFrame {
         JLabel statusLabel = new JLabel(" Select a download to perform actions.");
         statusLabel.setForeground(Color.GRAY);
         statusBar.add(statusLabel);
+        totalSpeedLabel = new JLabel();
+        totalSpeedLabel.setForeground(Color.GRAY);
+        statusBar.add(totalSpeedLabel);
         add(statusBar, BorderLayout.SOUTH);
 
         initActionListeners();
@@ -144,34 +188,9 @@ public class MainFrame extends JFrame {
         return btn;
     }
 
-    private void addDownloadCard(Download download) {
-        DownloadCard card = new DownloadCard(download);
-
-        // Click listener for selection
-        card.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseClicked(MouseEvent e) {
-                selectDownload(download.getId());
-                if (e.getClickCount() == 2) {
-                    DownloadDetailsDialog dialog = new DownloadDetailsDialog(MainFrame.this, downloadManager,
-                            download.getId(), download.getFilename());
-                    dialog.setVisible(true);
-                }
-            }
-        });
-
-        // Insert at top (index 0), keeping glue at bottom
-        listPanel.add(card, 0);
-        listPanel.revalidate();
-        listPanel.repaint();
-
-        cardMap.put(download.getId(), card);
-    }
-
-    private void selectDownload(int id) {
-        this.selectedDownloadId = id;
-        // Visual feedback could be added to cards here (e.g. border highlight)
-        // For simplicity, just tracking state
+    private void selectDownload(int row) {
+        DownloadSummary download = row >= 0 ? tableModel.getDownloadAt(row) : null;
+        this.selectedDownloadId = download != null ? download.getId() : null;
     }
 
     private void initActionListeners() {
@@ -185,37 +204,39 @@ public class MainFrame extends JFrame {
                 if (url.isEmpty() || path.isEmpty())
                     return;
 
-                new SwingWorker<String, Void>() {
+                new SwingWorker<File, Void>() {
                     @Override
-                    protected String doInBackground() throws Exception {
-                        return FilenameUtils.resolveFilename(url);
+                    protected File doInBackground() throws Exception {
+                        String filename = FilenameUtils.resolveFilename(url);
+                        if (filename == null || filename.isEmpty())
+                            filename = "download.file";
+
+                        // Unique Filename Logic
+                        File file = new File(path, filename);
+                        String nameWithoutExt = filename;
+                        String ext = "";
+                        int dotIndex = filename.lastIndexOf('.');
+                        if (dotIndex > 0) {
+                            nameWithoutExt = filename.substring(0, dotIndex);
+                            ext = filename.substring(dotIndex);
+                        }
+
+                        // The final file only appears on completion, so unfinished and
+                        // known downloads must be checked as well
+                        int counter = 1;
+                        while (downloadManager.isPathInUse(file.getAbsolutePath())) {
+                            String newName = nameWithoutExt + " (" + counter + ")" + ext;
+                            file = new File(path, newName);
+                            counter++;
+                        }
+                        return file;
                     }
 
                     @Override
                     protected void done() {
                         try {
-                            String filename = get();
-                            if (filename == null || filename.isEmpty())
-                                filename = "download.file";
-
-                            // Unique Filename Logic
-                            File file = new File(path, filename);
-                            String nameWithoutExt = filename;
-                            String ext = "";
-                            int dotIndex = filename.lastIndexOf('.');
-                            if (dotIndex > 0) {
-                                nameWithoutExt = filename.substring(0, dotIndex);
-                                ext = filename.substring(dotIndex);
-                            }
-
-                            int counter = 1;
-                            while (file.exists()) {
-                                String newName = nameWithoutExt + " (" + counter + ")" + ext;
-                                file = new File(path, newName);
-                                counter++;
-                            }
-
-                            filename = file.getName();
+                            File file = get();
+                            String filename = file.getName();
                             String fullPath = file.getAbsolutePath();
 
                             Download download = new Download();
@@ -225,10 +246,10 @@ public class MainFrame extends JFrame {
                             download.setThreadCount(16);
 
                             // Manager
-                            int id = downloadManager.addDownload(download, createCallback());
+                            int id = downloadManager.addDownload(download, null);
 
                             // UI
-                            addDownloadCard(download);
+                            tableModel.downloadAdded();
 
                             // Start
                             downloadManager.startDownload(id);
@@ -265,12 +286,7 @@ public class MainFrame extends JFrame {
         removeButton.addActionListener(e -> {
             if (selectedDownloadId != null) {
                 downloadManager.removeDownload(selectedDownloadId);
-                DownloadCard card = cardMap.remove(selectedDownloadId);
-                if (card != null) {
-                    listPanel.remove(card);
-                    listPanel.revalidate();
-                    listPanel.repaint();
-                }
+                tableModel.removeDownload(selectedDownloadId);
                 selectedDownloadId = null;
             }
         });
@@ -280,71 +296,116 @@ public class MainFrame extends JFrame {
                     "Remove ALL downloads? This cannot be undone.", "Confirm Remove All", JOptionPane.YES_NO_OPTION);
             if (confirm == JOptionPane.YES_OPTION) {
                 downloadManager.removeAllDownloads();
-                listPanel.removeAll();
-                listPanel.add(Box.createVerticalGlue()); // Restore glue
-                cardMap.clear();
+                tableModel.clearAll();
                 selectedDownloadId = null;
-                listPanel.revalidate();
-                listPanel.repaint();
             }
         });
     }
 
     private void loadExistingDownloads() {
-        List<Download> downloads = downloadManager.getAllDownloads();
-        for (Download d : downloads) {
-            addDownloadCard(d);
-            if (d.getStatus() != DownloadStatus.COMPLETED && d.getStatus() != DownloadStatus.CANCELED) {
-                downloadManager.registerCallback(d.getId(), createCallback());
+        tableModel.refresh();
+    }
+
+    /**
+     * Runs on the EDT once per frame: applies the status changes collected
+     * since the last frame and pulls live progress for running downloads.
+     * Only rows whose values changed are repainted.
+     */
+    private void refreshRows() {
+        // Stopping right away could race a start whose event came before its record
+        if (pendingStatus.isEmpty() && downloadManager.isIdle()) {
+            if (++idleFrames >= IDLE_FRAMES_BEFORE_STOP) {
+                refreshTimer.stop();
+                return;
             }
+        } else {
+            idleFrames = 0;
+        }
+        // Nothing to paint while hidden or minimized; changes wait for the next visible frame
+        if (!isShowing() || (getExtendedState() & Frame.ICONIFIED) != 0)
+            return;
+        for (Integer id : pendingStatus.keySet()) {
+            DownloadStatus status = pendingStatus.remove(id);
+            if (status != null)
+                tableModel.updateStatus(id, status);
+        }
+        for (DownloadSnapshot snapshot : downloadManager.getActiveSnapshots()) {
+            tableModel.updateProgress(snapshot.getId(), snapshot.getDownloadedSize(), snapshot.getFileSize());
+            tableModel.updateSpeed(snapshot.getId(), snapshot.getSpeed(), snapshot.getEtaSeconds());
         }
+        String total = downloadManager.isIdle() ? ""
+                : " | Total: " + formatSize((long) downloadManager.getTotalSpeed()) + "/s";
+        if (!total.equals(totalSpeedLabel.getText()))
+            totalSpeedLabel.setText(total);
+    }
+
+    private String formatSize(long bytes) {
+        if (bytes <= 0)
+            return "0 B";
+        if (bytes < 1024)
+            return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        String pre = "KMGTPE".charAt(exp - 1) + "";
+        return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
+    }
+
+    /**
+     * Starts the refresh timer if it stopped while nothing was running. Safe
+     * to call from any thread.
+     */
+    private void wakeRefresh() {
+        SwingUtilities.invokeLater(() -> {
+            idleFrames = 0;
+            if (!refreshTimer.isRunning())
+                refreshTimer.start();
+        });
     }
 
     private DownloadCallback createCallback() {
         return new DownloadCallback() {
             @Override
             public void onStart(int id) {
-                SwingUtilities.invokeLater(() -> updateCard(id, c -> c.updateStatus(DownloadStatus.DOWNLOADING)));
+                pendingStatus.put(id, DownloadStatus.DOWNLOADING);
+                wakeRefresh();
             }
 
             @Override
             public void onPause(int id) {
-                SwingUtilities.invokeLater(() -> updateCard(id, c -> c.updateStatus(DownloadStatus.PAUSED)));
+                pendingStatus.put(id, DownloadStatus.PAUSED);
+                wakeRefresh();
             }
 
             @Override
             public void onResume(int id) {
-                SwingUtilities.invokeLater(() -> updateCard(id, c -> c.updateStatus(DownloadStatus.DOWNLOADING)));
+                pendingStatus.put(id, DownloadStatus.DOWNLOADING);
+                wakeRefresh();
             }
 
             @Override
             public void onProgress(int id, long downloaded, long total, double progress) {
-                SwingUtilities.invokeLater(() -> updateCard(id, c -> c.updateProgress(downloaded, total)));
+                // Progress is pulled from snapshots by the refresh timer
             }
 
             @Override
             public void onDownloadCompleted(int id) {
-                SwingUtilities.invokeLater(() -> updateCard(id, c -> c.updateStatus(DownloadStatus.COMPLETED)));
+                pendingStatus.put(id, DownloadStatus.COMPLETED);
+                wakeRefresh();
             }
 
             @Override
             public void onDownloadFailed(int id, String message) {
-                SwingUtilities.invokeLater(() -> updateCard(id, c -> c.updateStatus(DownloadStatus.FAILED)));
+                pendingStatus.put(id, DownloadStatus.FAILED);
+                wakeRefresh();
             }
 
             @Override
             public void onDownloadCancelled(int id) {
-                SwingUtilities.invokeLater(() -> updateCard(id, c -> c.updateStatus(DownloadStatus.CANCELED)));
+                pendingStatus.put(id, DownloadStatus.CANCELED);
+                wakeRefresh();
             }
         };
     }
 
-    private void updateCard(int id, java.util.function.Consumer<DownloadCard> action) {
-        DownloadCard c = cardMap.get(id);
-        if (c != null)
-            action.accept(c);
-    }
-
     public void showFrame() {
         setVisible(true);
     }
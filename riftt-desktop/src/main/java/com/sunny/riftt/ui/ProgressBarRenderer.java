@@ -14,7 +14,13 @@ public class ProgressBarRenderer extends JProgressBar implements TableCellRender
     @Override
     public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
             int row, int column) {
-        double progress = (value instanceof Double) ? (Double) value : 0;
+        if (!(value instanceof Double)) {
+            // Size not known (yet)
+            setValue(0);
+            setString("");
+            return this;
+        }
+        double progress = (Double) value;
         setValue((int) progress);
         setString(String.format("%.1f%%", progress));
         return this;
@@ -1,6 +1,7 @@
 package com.sunny.riftt.ui;
 
 import com.sunny.riftt.manager.SettingsManager;
+import com.sunny.riftt.storage.DurabilityMode;
 
 import javax.swing.*;
 import java.awt.*;
@@ -12,6 +13,8 @@ public class SettingsDialog extends JDialog {
     private JSpinner threadsSpinner;
     private JTextField pathField;
     private JSpinner timeoutSpinner;
+    private JComboBox<DurabilityMode> durabilityCombo;
+    private JSpinner archiveSpinner;
 
     public SettingsDialog(Frame owner) {
         super(owner, "Settings", true);
@@ -21,7 +24,7 @@ public class SettingsDialog extends JDialog {
 
     private void initUI() {
         setLayout(new BorderLayout());
-        setSize(450, 250);
+        setSize(450, 320);
         setLocationRelativeTo(getOwner());
 
         JPanel formPanel = new JPanel(new GridBagLayout());
@@ -82,6 +85,31 @@ public class SettingsDialog extends JDialog {
                 settingsManager.getConnectionTimeout(), 1000, 60000, 1000));
         formPanel.add(timeoutSpinner, gbc);
 
+        // 5. Durability
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        gbc.weightx = 0;
+        formPanel.add(new JLabel("Checkpoint Durability:"), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        durabilityCombo = new JComboBox<>(DurabilityMode.values());
+        durabilityCombo.setSelectedItem(settingsManager.getDurabilityMode());
+        durabilityCombo.setToolTipText("NONE: fastest, may lose recent progress on power loss. "
+                + "PERIODIC: fsync about once a second. STRICT: fsync before every checkpoint.");
+        formPanel.add(durabilityCombo, gbc);
+
+        // 6. Archive
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        gbc.weightx = 0;
+        formPanel.add(new JLabel("Archive Completed After (days):"), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        archiveSpinner = new JSpinner(new SpinnerNumberModel(
+                settingsManager.getArchiveAfterDays(), 0, 3650, 1));
+        archiveSpinner.setToolTipText("0 keeps completed downloads in the main list forever.");
+        formPanel.add(archiveSpinner, gbc);
+
         add(formPanel, BorderLayout.CENTER);
 
         // Buttons
@@ -110,6 +138,8 @@ public class SettingsDialog extends JDialog {
         settingsManager.setThreadsPerDownload((int) threadsSpinner.getValue());
         settingsManager.setDefaultDownloadPath(pathField.getText());
         settingsManager.setConnectionTimeout((int) timeoutSpinner.getValue());
+        settingsManager.setDurabilityMode((DurabilityMode) durabilityCombo.getSelectedItem());
+        settingsManager.setArchiveAfterDays((int) archiveSpinner.getValue());
 
         JOptionPane.showMessageDialog(this, "Settings saved. Restart required for some changes to take effect.");
         dispose();